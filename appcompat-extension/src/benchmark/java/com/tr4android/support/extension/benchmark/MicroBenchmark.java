@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * A minimal harness for the JVM microbenchmarks, which runs an operation through a warmup
+ * phase and then reports the average time and the bytes allocated by the current thread per
+ * operation.
+ * <p>
+ * Benchmarks run under Robolectric, so the framework classes they call into are shadows. The
+ * numbers are meant for comparing two revisions of the library on the same machine, not for
+ * predicting the cost on a device.
+ */
+public final class MicroBenchmark {
+    private static final int DEFAULT_WARMUP_ITERATIONS = 2000;
+    private static final int DEFAULT_MEASURED_ITERATIONS = 10000;
+
+    // The bean counting the allocations of a thread or null if the JVM doesn't support it
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = findAllocationBean();
+
+    /**
+     * The operation that is measured.
+     */
+    public static abstract class Operation {
+        /**
+         * Prepare an iteration, the time and allocations of this aren't measured.
+         */
+        public void setUp(int iteration) {
+        }
+
+        public abstract void run(int iteration);
+    }
+
+    /**
+     * The measurements of a benchmark.
+     */
+    public static final class Result {
+        public final String name;
+        public final double nanosPerOp;
+        /** The allocated bytes per operation or -1 if the JVM can't measure them. */
+        public final double bytesPerOp;
+
+        Result(String name, double nanosPerOp, double bytesPerOp) {
+            this.name = name;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-56s %12.1f ns/op %12.1f B/op",
+                    name, nanosPerOp, bytesPerOp);
+        }
+    }
+
+    private MicroBenchmark() {
+    }
+
+    public static Result run(String name, Operation operation) {
+        return run(name, DEFAULT_WARMUP_ITERATIONS, DEFAULT_MEASURED_ITERATIONS, operation);
+    }
+
+    /**
+     * Runs and measures an operation and prints the result.
+     *
+     * @param name               the name of the benchmark
+     * @param warmupIterations   the number of iterations that aren't measured
+     * @param measuredIterations the number of measured iterations
+     * @param operation          the operation
+     * @return the result
+     */
+    public static Result run(String name, int warmupIterations, int measuredIterations,
+                             Operation operation) {
+        for (int i = 0; i < warmupIterations; i++) {
+            operation.setUp(i);
+            operation.run(i);
+        }
+
+        long nanos = 0;
+        long bytes = 0;
+        final boolean countBytes = ALLOCATION_BEAN != null;
+        final long countOverhead = countBytes ? getAllocationCountOverhead() : 0;
+        for (int i = 0; i < measuredIterations; i++) {
+            operation.setUp(i);
+            final long startBytes = countBytes ? getAllocatedBytes() : 0;
+            final long startNanos = System.nanoTime();
+            operation.run(i);
+            nanos += System.nanoTime() - startNanos;
+            if (countBytes) {
+                bytes += getAllocatedBytes() - startBytes - countOverhead;
+            }
+        }
+
+        final Result result = new Result(name, nanos / (double) measuredIterations,
+                countBytes ? bytes / (double) measuredIterations : -1);
+        System.out.println(result);
+        return result;
+    }
+
+    private static long getAllocatedBytes() {
+        return ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // Returns the bytes allocated by reading the allocated bytes, which are subtracted from
+    // each measurement
+    private static long getAllocationCountOverhead() {
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 16; i++) {
+            final long start = getAllocatedBytes();
+            overhead = Math.min(overhead, getAllocatedBytes() - start);
+        }
+        return overhead;
+    }
+
+    private static com.sun.management.ThreadMXBean findAllocationBean() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()
+                    && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.drawable;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.ContextThemeWrapper;
+
+import com.tr4android.appcompat.extension.R;
+import com.tr4android.support.extension.benchmark.MicroBenchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class PlaceholderDrawableBenchmark {
+    private static final int SIZE = 144;
+
+    private PlaceholderDrawable mDrawable;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        mDrawable = new PlaceholderDrawable.Builder(new ContextThemeWrapper(
+                RuntimeEnvironment.application, R.style.Theme_AppCompat_Light))
+                .setPlaceholderText("A")
+                .build();
+        mDrawable.setBounds(0, 0, SIZE, SIZE);
+        mCanvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void draw() {
+        MicroBenchmark.run("PlaceholderDrawable.draw", new MicroBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                mDrawable.draw(mCanvas);
+            }
+        });
+    }
+
+    @Test
+    public void drawUncached() {
+        final int maxSize = PlaceholderDrawable.getTileCacheMaxSize();
+        PlaceholderDrawable.setTileCacheMaxSize(0);
+        try {
+            MicroBenchmark.run("PlaceholderDrawable.draw without tile cache",
+                    new MicroBenchmark.Operation() {
+                        @Override
+                        public void setUp(int iteration) {
+                            mDrawable.setPlaceholder(String.valueOf((char) ('A' + iteration % 26)),
+                                    0xFF3F51B5);
+                        }
+
+                        @Override
+                        public void run(int iteration) {
+                            mDrawable.draw(mCanvas);
+                        }
+                    });
+        } finally {
+            PlaceholderDrawable.setTileCacheMaxSize(maxSize);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.drawable;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.GradientDrawable;
+
+import com.tr4android.support.extension.benchmark.MicroBenchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class ShadowDrawableWrapperBenchmark {
+    private ShadowDrawableWrapper mDrawable;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        final GradientDrawable content = new GradientDrawable();
+        content.setColor(0xFFFFFFFF);
+        content.setCornerRadius(8f);
+        mDrawable = new ShadowDrawableWrapper(RuntimeEnvironment.application.getResources(),
+                content, 8f, 6f, 12f);
+        mDrawable.setBounds(0, 0, 480, 120);
+        mCanvas = new Canvas(Bitmap.createBitmap(480, 120, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void draw() {
+        MicroBenchmark.run("ShadowDrawableWrapper.draw", new MicroBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                mDrawable.draw(mCanvas);
+            }
+        });
+    }
+}
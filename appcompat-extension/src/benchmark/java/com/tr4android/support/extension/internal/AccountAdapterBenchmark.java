@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.internal;
+
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.ContextThemeWrapper;
+
+import com.tr4android.appcompat.extension.R;
+import com.tr4android.support.extension.benchmark.MicroBenchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AccountAdapterBenchmark {
+    private static final int ACCOUNT_COUNT = 1000;
+    private static final int HOLDER_COUNT = 8;
+
+    private AccountAdapter mAdapter;
+    private RecyclerView.ViewHolder[] mHolders;
+
+    @Before
+    public void setUp() {
+        ArrayList<IAccount> accounts = new ArrayList<>(ACCOUNT_COUNT);
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            accounts.add(new Account()
+                    .setId(i)
+                    .setName("Account " + i)
+                    .setEmail("account" + i + "@example.com")
+                    .setInfoText(i % 2 == 0 ? "Info " + i : null)
+                    .setPlaceholderCircleColor(0xFF3F51B5));
+        }
+        // The header is only needed for clicks and the header item, which aren't bound here
+        mAdapter = new AccountAdapter(accounts, null, true, true, true);
+
+        RecyclerView parent = new RecyclerView(new ContextThemeWrapper(
+                RuntimeEnvironment.application, R.style.Theme_AppCompat_Light));
+        parent.setLayoutManager(new LinearLayoutManager(parent.getContext()));
+        mHolders = new RecyclerView.ViewHolder[HOLDER_COUNT];
+        for (int i = 0; i < HOLDER_COUNT; i++) {
+            mHolders[i] = mAdapter.onCreateViewHolder(parent, mAdapter.getItemViewType(1));
+        }
+    }
+
+    @Test
+    public void bindAccounts() {
+        MicroBenchmark.run("AccountAdapter.onBindViewHolder 1000 accounts", 2, 10,
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public void run(int iteration) {
+                        bindAll(Collections.emptyList());
+                    }
+                });
+    }
+
+    @Test
+    public void bindAccountsChecked() {
+        final List<Object> payloads = Collections.singletonList(AccountAdapter.PAYLOAD_CHECKED);
+        MicroBenchmark.run("AccountAdapter.onBindViewHolder 1000 accounts (checked payload)",
+                2, 10, new MicroBenchmark.Operation() {
+                    @Override
+                    public void run(int iteration) {
+                        bindAll(payloads);
+                    }
+                });
+    }
+
+    // Binds all accounts, the header is at position 0
+    private void bindAll(List<Object> payloads) {
+        for (int position = 1; position <= ACCOUNT_COUNT; position++) {
+            mAdapter.onBindViewHolder(mHolders[position % HOLDER_COUNT], position, payloads);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.picker.date;
+
+import com.tr4android.support.extension.benchmark.MicroBenchmark;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Compares the month arithmetic of the date picker before and after it moved from
+ * {@link Calendar} to {@link MonthGrid}.
+ */
+public class MonthGridBenchmark {
+    private static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+
+    // 1900-01-01 and 2100-12-31, the default range of the date picker
+    private static final long MIN_MILLIS = -2208988800000L;
+    private static final long MAX_MILLIS = 4133894400000L;
+
+    private static final TimeZone ZONE = TimeZone.getTimeZone("Europe/Berlin");
+
+    private static long getMillis(int iteration) {
+        return MIN_MILLIS + (iteration * 7919L % 73413L) * MILLIS_PER_DAY;
+    }
+
+    @Test
+    public void diffMonthsWithCalendar() {
+        final Calendar min = Calendar.getInstance(ZONE);
+        min.setTimeInMillis(MIN_MILLIS);
+        final Calendar max = Calendar.getInstance(ZONE);
+        max.setTimeInMillis(MAX_MILLIS);
+        final Calendar day = Calendar.getInstance(ZONE);
+        MicroBenchmark.run("DayPickerView.getDiffMonths with Calendar",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public void run(int iteration) {
+                        day.setTimeInMillis(getMillis(iteration));
+                        getDiffMonths(min, day);
+                        getDiffMonths(min, max);
+                    }
+                });
+    }
+
+    @Test
+    public void diffMonthsWithMonthGrid() {
+        MicroBenchmark.run("DayPickerView.getDiffMonths with MonthGrid",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public void run(int iteration) {
+                        getDiffMonths(MIN_MILLIS, getMillis(iteration));
+                        getDiffMonths(MIN_MILLIS, MAX_MILLIS);
+                    }
+                });
+    }
+
+    @Test
+    public void monthParamsWithCalendar() {
+        MicroBenchmark.run("SimpleMonthView month params with Calendar",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public void run(int iteration) {
+                        final Calendar calendar = Calendar.getInstance(ZONE);
+                        calendar.set(Calendar.YEAR, 1900 + iteration % 200);
+                        calendar.set(Calendar.MONTH, iteration % 12);
+                        calendar.set(Calendar.DAY_OF_MONTH, 1);
+                        calendar.get(Calendar.DAY_OF_WEEK);
+                        calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
+
+                        // Figure out what day today is
+                        final Calendar today = Calendar.getInstance(ZONE);
+                        today.get(Calendar.DAY_OF_MONTH);
+                    }
+                });
+    }
+
+    @Test
+    public void monthParamsWithMonthGrid() {
+        MicroBenchmark.run("SimpleMonthView month params with MonthGrid",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public void run(int iteration) {
+                        final MonthGrid grid = new MonthGrid(1900 + iteration % 200,
+                                iteration % 12, Calendar.SUNDAY, 1, 31);
+                        grid.getDayOffset();
+
+                        // Figure out what day today is
+                        final long today = MonthGrid.getTodayEpochDay(ZONE);
+                        MonthGrid.getDayOfMonth(today);
+                    }
+                });
+    }
+
+    // The Calendar based implementation which DayPickerView used before
+    private static int getDiffMonths(Calendar start, Calendar end) {
+        final int diffYears = end.get(Calendar.YEAR) - start.get(Calendar.YEAR);
+        return end.get(Calendar.MONTH) - start.get(Calendar.MONTH) + 12 * diffYears;
+    }
+
+    private static int getDiffMonths(long startMillis, long endMillis) {
+        return MonthGrid.getMonthIndex(MonthGrid.toEpochDay(endMillis, ZONE))
+                - MonthGrid.getMonthIndex(MonthGrid.toEpochDay(startMillis, ZONE));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.picker.date;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import com.tr4android.appcompat.extension.R;
+import com.tr4android.support.extension.benchmark.MicroBenchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Calendar;
+
+@RunWith(RobolectricTestRunner.class)
+public class SimpleMonthViewBenchmark {
+    private SimpleMonthView mView;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        mView = new SimpleMonthView(new ContextThemeWrapper(RuntimeEnvironment.application,
+                R.style.Theme_AppCompat_Light));
+        mView.setMonthParams(15, Calendar.MARCH, 2016, Calendar.SUNDAY, 1, 31);
+        mView.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY));
+        mView.layout(0, 0, mView.getMeasuredWidth(), mView.getMeasuredHeight());
+        mCanvas = new Canvas(Bitmap.createBitmap(mView.getWidth(), mView.getHeight(),
+                Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void draw() {
+        MicroBenchmark.run("SimpleMonthView.draw", new MicroBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                mView.draw(mCanvas);
+            }
+        });
+    }
+
+    @Test
+    public void setMonthParams() {
+        MicroBenchmark.run("SimpleMonthView.setMonthParams", new MicroBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                mView.setMonthParams(-1, iteration % 12, 2016, Calendar.SUNDAY, 1, 31);
+            }
+        });
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.picker.time;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.view.ContextThemeWrapper;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.tr4android.appcompat.extension.R;
+import com.tr4android.support.extension.benchmark.MicroBenchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class RadialTimePickerViewBenchmark {
+    private static final int SIZE = 960;
+
+    private RadialTimePickerView mView;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        mView = createView(null);
+        mCanvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+    }
+
+    static RadialTimePickerView createView(AttributeSet attrs) {
+        final RadialTimePickerView view = new RadialTimePickerView(new ContextThemeWrapper(
+                RuntimeEnvironment.application, R.style.Theme_AppCompat_Light), attrs);
+        view.initialize(10, 25, false);
+        layout(view);
+        return view;
+    }
+
+    static void layout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, SIZE, SIZE);
+    }
+
+    @Test
+    public void drawHours() {
+        mView.showHours(false);
+        MicroBenchmark.run("RadialTimePickerView.draw hours", new MicroBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                mView.draw(mCanvas);
+            }
+        });
+    }
+
+    @Test
+    public void drawMinutesClip() {
+        drawMinutes("RadialTimePickerView.draw minutes (clip)", mView);
+    }
+
+    @Test
+    public void drawMinutesShader() {
+        final AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.numbersSelectorMode, "shader")
+                .build();
+        drawMinutes("RadialTimePickerView.draw minutes (shader)", createView(attrs));
+    }
+
+    @Test
+    public void touchMove() {
+        // Moves around the clock on the minutes circle, one event per degree.
+        final float radius = SIZE / 3f;
+        final MotionEvent[] events = new MotionEvent[360];
+        for (int i = 0; i < events.length; i++) {
+            final double angle = Math.toRadians(i);
+            events[i] = MotionEvent.obtain(0, i, MotionEvent.ACTION_MOVE,
+                    SIZE / 2f + (float) (radius * Math.sin(angle)),
+                    SIZE / 2f - (float) (radius * Math.cos(angle)), 0);
+        }
+
+        mView.showMinutes(false);
+        final MotionEvent down = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN,
+                SIZE / 2f, SIZE / 2f - radius, 0);
+        mView.onTouchEvent(down);
+        down.recycle();
+
+        MicroBenchmark.run("RadialTimePickerView.onTouchEvent move", new MicroBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                mView.onTouchEvent(events[iteration % events.length]);
+            }
+        });
+
+        for (MotionEvent event : events) {
+            event.recycle();
+        }
+    }
+
+    private void drawMinutes(String name, final RadialTimePickerView view) {
+        view.showMinutes(false);
+        MicroBenchmark.run(name, new MicroBenchmark.Operation() {
+            @Override
+            public void setUp(int iteration) {
+                view.setCurrentMinute(iteration % 60);
+            }
+
+            @Override
+            public void run(int iteration) {
+                view.draw(mCanvas);
+            }
+        });
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.widget;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.GradientDrawable;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import com.tr4android.appcompat.extension.R;
+import com.tr4android.support.extension.benchmark.MicroBenchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class CircleImageViewBenchmark {
+    private static final int SIZE = 144;
+
+    private CircleImageView mView;
+    private GradientDrawable mDrawable;
+
+    @Before
+    public void setUp() {
+        mView = new CircleImageView(new ContextThemeWrapper(RuntimeEnvironment.application,
+                R.style.Theme_AppCompat_Light));
+        mView.measure(View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY));
+        mView.layout(0, 0, SIZE, SIZE);
+        mDrawable = new GradientDrawable();
+        mDrawable.setColor(0xFF3F51B5);
+        mDrawable.setSize(SIZE, SIZE);
+    }
+
+    @Test
+    public void setImageDrawableBitmapMode() {
+        setImageDrawable("CircleImageView.setImageDrawable (bitmap mode)");
+    }
+
+    @Test
+    public void setImageDrawableShaderMode() {
+        mView.setRenderMode(CircleImageView.RENDER_MODE_SHADER);
+        setImageDrawable("CircleImageView.setImageDrawable (shader mode)");
+    }
+
+    @Test
+    public void drawBitmapMode() {
+        draw("CircleImageView.draw (bitmap mode)");
+    }
+
+    @Test
+    public void drawShaderMode() {
+        mView.setRenderMode(CircleImageView.RENDER_MODE_SHADER);
+        draw("CircleImageView.draw (shader mode)");
+    }
+
+    private void setImageDrawable(String name) {
+        MicroBenchmark.run(name, new MicroBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                mView.setImageDrawable(mDrawable);
+            }
+        });
+    }
+
+    private void draw(String name) {
+        mView.setImageDrawable(mDrawable);
+        final Canvas canvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+        MicroBenchmark.run(name, new MicroBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                mView.draw(canvas);
+            }
+        });
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.widget;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.View;
+
+import com.tr4android.support.extension.benchmark.MicroBenchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class CollapsingTextHelperBenchmark {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 540;
+
+    private CollapsingTextHelper mHelper;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        final View view = new View(RuntimeEnvironment.application);
+        view.layout(0, 0, WIDTH, HEIGHT);
+        mHelper = new CollapsingTextHelper(view);
+        mHelper.setExpandedTextSize(96f);
+        mHelper.setCollapsedTextSize(56f);
+        mHelper.setExpandedBounds(48, 0, WIDTH - 48, HEIGHT - 48);
+        mHelper.setCollapsedBounds(144, 0, WIDTH - 144, 168);
+        mHelper.setText("A rather long title that has to be ellipsized while collapsing");
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void setExpansionFraction() {
+        MicroBenchmark.run("CollapsingTextHelper.setExpansionFraction",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public void run(int iteration) {
+                        mHelper.setExpansionFraction((iteration % 101) / 100f, false);
+                    }
+                });
+    }
+
+    @Test
+    public void draw() {
+        MicroBenchmark.run("CollapsingTextHelper.draw", new MicroBenchmark.Operation() {
+            @Override
+            public void setUp(int iteration) {
+                mHelper.setExpansionFraction((iteration % 101) / 100f, false);
+            }
+
+            @Override
+            public void run(int iteration) {
+                mHelper.draw(mCanvas);
+            }
+        });
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.widget;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.design.widget.AppBarLayout;
+import android.support.design.widget.CoordinatorLayout;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.Toolbar;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.tr4android.appcompat.extension.R;
+import com.tr4android.support.extension.benchmark.MicroBenchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class FlexibleToolbarLayoutBenchmark {
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 1280;
+    private static final int EXPANDED_HEIGHT = 600;
+    private static final int COLLAPSED_HEIGHT = 150;
+    private static final int PARALLAX_CHILD_COUNT = 24;
+    private static final int SCROLL_STEP = 10;
+    private static final int STEPS_PER_DIRECTION = (EXPANDED_HEIGHT - COLLAPSED_HEIGHT) / SCROLL_STEP;
+
+    private CoordinatorLayout mCoordinatorLayout;
+    private AppBarLayout mAppBarLayout;
+    private AppBarLayout.Behavior mBehavior;
+    private final int[] mConsumed = new int[2];
+
+    @Before
+    public void setUp() {
+        final Activity activity = Robolectric.setupActivity(Activity.class);
+        final Context context = new ContextThemeWrapper(activity, R.style.Theme_AppCompat_Light);
+
+        final FlexibleToolbarLayout toolbarLayout = new FlexibleToolbarLayout(context);
+        toolbarLayout.setMinimumHeight(COLLAPSED_HEIGHT);
+        toolbarLayout.setTitle("Title");
+        toolbarLayout.setSubtitle("Subtitle");
+        toolbarLayout.setContentScrimColor(0xFF3F51B5);
+        for (int i = 0; i < PARALLAX_CHILD_COUNT; i++) {
+            final View child = new View(context);
+            child.setBackgroundColor(0x10000000 * (i % 8) | 0x00FF8000);
+            final FlexibleToolbarLayout.LayoutParams lp = new FlexibleToolbarLayout.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
+            lp.setCollapseMode(FlexibleToolbarLayout.LayoutParams.COLLAPSE_MODE_PARALLAX);
+            lp.setParallaxMultiplier(0.1f + 0.8f * i / PARALLAX_CHILD_COUNT);
+            toolbarLayout.addView(child, lp);
+        }
+        final FlexibleToolbarLayout.LayoutParams toolbarLp = new FlexibleToolbarLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, COLLAPSED_HEIGHT);
+        toolbarLp.setCollapseMode(FlexibleToolbarLayout.LayoutParams.COLLAPSE_MODE_PIN);
+        toolbarLayout.addView(new Toolbar(context), toolbarLp);
+
+        mAppBarLayout = new AppBarLayout(context);
+        final AppBarLayout.LayoutParams toolbarLayoutLp = new AppBarLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, EXPANDED_HEIGHT);
+        toolbarLayoutLp.setScrollFlags(AppBarLayout.LayoutParams.SCROLL_FLAG_SCROLL
+                | AppBarLayout.LayoutParams.SCROLL_FLAG_EXIT_UNTIL_COLLAPSED);
+        mAppBarLayout.addView(toolbarLayout, toolbarLayoutLp);
+
+        mCoordinatorLayout = new CoordinatorLayout(context);
+        mBehavior = new AppBarLayout.Behavior();
+        final CoordinatorLayout.LayoutParams appBarLp = new CoordinatorLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        appBarLp.setBehavior(mBehavior);
+        mCoordinatorLayout.addView(mAppBarLayout, appBarLp);
+
+        // Attach to a window, so the offset listener is registered
+        activity.setContentView(mCoordinatorLayout);
+        mCoordinatorLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mCoordinatorLayout.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void scroll() {
+        MicroBenchmark.run("FlexibleToolbarLayout offset change, " + PARALLAX_CHILD_COUNT
+                + " parallax children", new MicroBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                scrollStep(iteration);
+            }
+        });
+    }
+
+    @Test
+    public void scrollAndDraw() {
+        final Canvas canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+        MicroBenchmark.run("FlexibleToolbarLayout offset change and draw, " + PARALLAX_CHILD_COUNT
+                + " parallax children", 500, 2000, new MicroBenchmark.Operation() {
+            @Override
+            public void run(int iteration) {
+                scrollStep(iteration);
+                mCoordinatorLayout.draw(canvas);
+            }
+        });
+    }
+
+    // Collapses and expands the app bar in steps, each step dispatches one offset change
+    private void scrollStep(int iteration) {
+        if ((iteration / STEPS_PER_DIRECTION) % 2 == 0) {
+            mBehavior.onNestedPreScroll(mCoordinatorLayout, mAppBarLayout, mCoordinatorLayout,
+                    0, SCROLL_STEP, mConsumed, ViewCompat.TYPE_TOUCH);
+        } else {
+            mBehavior.onNestedScroll(mCoordinatorLayout, mAppBarLayout, mCoordinatorLayout,
+                    0, 0, 0, -SCROLL_STEP, ViewCompat.TYPE_TOUCH);
+        }
+    }
+}
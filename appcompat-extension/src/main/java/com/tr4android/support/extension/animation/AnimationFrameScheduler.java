@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.animation;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * Schedules a single callback per animation frame on the main thread and dispatches it to all
+ * running animations, so they share one frame timestamp. Frames are aligned with vsync using
+ * the {@link Choreographer} where available and posted to a {@link Handler} otherwise.
+ * <p>
+ * This class is not thread safe and must only be used from the main thread.
+ */
+final class AnimationFrameScheduler {
+
+    interface FrameCallback {
+        /**
+         * Called once per frame while the callback is added.
+         *
+         * @param frameTime the time of the frame in the {@link SystemClock#uptimeMillis()} time base
+         * @return whether the callback should be called for the next frame too
+         */
+        boolean doAnimationFrame(long frameTime);
+    }
+
+    /** Returned by {@link #getFrameTime()} outside of a frame. */
+    static final long NO_FRAME_TIME = -1;
+
+    private static final int HANDLER_FRAME_DELAY = 10;
+
+    private static AnimationFrameScheduler sInstance;
+
+    // The added callbacks, removed callbacks are set to null until the current frame is done
+    private final ArrayList<FrameCallback> mCallbacks = new ArrayList<>();
+    private boolean mFramePosted;
+    private boolean mInFrame;
+    private long mFrameTime;
+
+    private final Handler mHandler;
+    private final ChoreographerFrameCallback mChoreographerCallback;
+
+    private AnimationFrameScheduler() {
+        if (Build.VERSION.SDK_INT >= 16) {
+            mHandler = null;
+            mChoreographerCallback = new ChoreographerFrameCallback(this);
+        } else {
+            mHandler = new Handler(Looper.getMainLooper());
+            mChoreographerCallback = null;
+        }
+    }
+
+    static AnimationFrameScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new AnimationFrameScheduler();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the time of the frame that is currently dispatched or {@link #NO_FRAME_TIME}
+     * outside of a frame. Animations started from a frame callback therefore start at that
+     * frame, all others at their first frame. The current time can't be used instead, as the
+     * time of the next frame may lie before it.
+     */
+    long getFrameTime() {
+        return mInFrame ? mFrameTime : NO_FRAME_TIME;
+    }
+
+    void addCallback(FrameCallback callback) {
+        if (!mCallbacks.contains(callback)) {
+            mCallbacks.add(callback);
+        }
+        scheduleFrame();
+    }
+
+    void removeCallback(FrameCallback callback) {
+        final int index = mCallbacks.indexOf(callback);
+        if (index >= 0) {
+            // Don't shift the list while a frame iterates over it
+            mCallbacks.set(index, null);
+        }
+    }
+
+    private void scheduleFrame() {
+        if (mFramePosted) {
+            return;
+        }
+        mFramePosted = true;
+        if (mChoreographerCallback != null) {
+            mChoreographerCallback.post();
+        } else {
+            mHandler.postDelayed(mHandlerRunnable, HANDLER_FRAME_DELAY);
+        }
+    }
+
+    void doFrame(long frameTime) {
+        mFramePosted = false;
+        mFrameTime = frameTime;
+        mInFrame = true;
+        // Callbacks added by this frame are called from the next frame on
+        final int count = mCallbacks.size();
+        for (int i = 0; i < count; i++) {
+            final FrameCallback callback = mCallbacks.get(i);
+            if (callback != null && !callback.doAnimationFrame(frameTime)) {
+                // Only clear the callback if it hasn't been removed and added again
+                if (mCallbacks.get(i) == callback) {
+                    mCallbacks.set(i, null);
+                }
+            }
+        }
+        mInFrame = false;
+
+        for (int i = mCallbacks.size() - 1; i >= 0; i--) {
+            if (mCallbacks.get(i) == null) {
+                mCallbacks.remove(i);
+            }
+        }
+        if (!mCallbacks.isEmpty()) {
+            scheduleFrame();
+        }
+    }
+
+    private final Runnable mHandlerRunnable = new Runnable() {
+        @Override
+        public void run() {
+            doFrame(SystemClock.uptimeMillis());
+        }
+    };
+
+    // Kept in its own class, so the Choreographer is only resolved on platforms that have it
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class ChoreographerFrameCallback implements Choreographer.FrameCallback {
+        private final AnimationFrameScheduler mScheduler;
+        private final Choreographer mChoreographer = Choreographer.getInstance();
+
+        ChoreographerFrameCallback(AnimationFrameScheduler scheduler) {
+            mScheduler = scheduler;
+        }
+
+        void post() {
+            mChoreographer.postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // The frame time is in the System.nanoTime() base, which uptimeMillis() shares
+            mScheduler.doFrame(frameTimeNanos / 1000000);
+        }
+    }
+}
@@ -16,23 +16,18 @@
 
 package com.tr4android.support.extension.animation;
 
-import android.os.Handler;
-import android.os.Looper;
-import android.os.SystemClock;
 import android.view.animation.AccelerateDecelerateInterpolator;
 import android.view.animation.Interpolator;
 
 /**
- * A 'fake' ValueAnimator implementation which uses a Runnable.
+ * A 'fake' ValueAnimator implementation which is driven by the shared
+ * {@link AnimationFrameScheduler}.
  */
 class ValueAnimatorCompatImplEclairMr1 extends ValueAnimatorCompat.Impl {
 
-    private static final int HANDLER_DELAY = 10;
     private static final int DEFAULT_DURATION = 200;
     private static final int DEFAULT_REPEAT_COUNT = 0;
 
-    private static final Handler sHandler = new Handler(Looper.getMainLooper());
-
     private long mStartTime;
     private boolean mIsRunning;
 
@@ -60,14 +55,16 @@ class ValueAnimatorCompatImplEclairMr1 extends ValueAnimatorCompat.Impl {
             mInterpolator = new AccelerateDecelerateInterpolator();
         }
 
-        mStartTime = SystemClock.uptimeMillis();
+        final AnimationFrameScheduler scheduler = AnimationFrameScheduler.getInstance();
+        // Outside of a frame the start time is set by the first frame
+        mStartTime = scheduler.getFrameTime();
         mIsRunning = true;
 
         if (mListener != null) {
             mListener.onAnimationStart();
         }
 
-        sHandler.postDelayed(mRunnable, HANDLER_DELAY);
+        scheduler.addCallback(mFrameCallback);
     }
 
     @Override
@@ -125,7 +122,7 @@ class ValueAnimatorCompatImplEclairMr1 extends ValueAnimatorCompat.Impl {
     @Override
     public void cancel() {
         mIsRunning = false;
-        sHandler.removeCallbacks(mRunnable);
+        AnimationFrameScheduler.getInstance().removeCallback(mFrameCallback);
 
         if (mListener != null) {
             mListener.onAnimationCancel();
@@ -141,7 +138,7 @@ class ValueAnimatorCompatImplEclairMr1 extends ValueAnimatorCompat.Impl {
     public void end() {
         if (mIsRunning) {
             mIsRunning = false;
-            sHandler.removeCallbacks(mRunnable);
+            AnimationFrameScheduler.getInstance().removeCallback(mFrameCallback);
 
             // Set our animated fraction to 1
             mAnimatedFraction = 1f;
@@ -161,10 +158,14 @@ class ValueAnimatorCompatImplEclairMr1 extends ValueAnimatorCompat.Impl {
         return mDuration;
     }
 
-    private void update() {
+    private boolean update(long frameTime) {
         if (mIsRunning) {
+            if (mStartTime == AnimationFrameScheduler.NO_FRAME_TIME) {
+                mStartTime = frameTime;
+            }
+
             // Update the animated fraction
-            final long elapsed = SystemClock.uptimeMillis() - mStartTime;
+            final long elapsed = Math.max(0, frameTime - mStartTime);
             final float linearFraction = elapsed / (float) mDuration;
             mAnimatedFraction = mInterpolator != null
                     ? mInterpolator.getInterpolation(linearFraction)
@@ -176,7 +177,7 @@ class ValueAnimatorCompatImplEclairMr1 extends ValueAnimatorCompat.Impl {
             }
 
             // Check to see if we've passed the animation duration
-            if (SystemClock.uptimeMillis() >= (mStartTime + mDuration)) {
+            if (frameTime >= (mStartTime + mDuration)) {
                 if (mRepeatCount < mCurrentIteration || mRepeatCount == ValueAnimatorCompat.INFINITE) {
                     // Animation repeats
                     mCurrentIteration += 1;
@@ -202,15 +203,15 @@ class ValueAnimatorCompatImplEclairMr1 extends ValueAnimatorCompat.Impl {
             }
         }
 
-        if (mIsRunning) {
-            // If we're still running, post another delayed runnable
-            sHandler.postDelayed(mRunnable, HANDLER_DELAY);
-        }
+        // If we're still running, we want to be called for the next frame
+        return mIsRunning;
     }
 
-    private final Runnable mRunnable = new Runnable() {
-        public void run() {
-            update();
-        }
-    };
+    private final AnimationFrameScheduler.FrameCallback mFrameCallback =
+            new AnimationFrameScheduler.FrameCallback() {
+                @Override
+                public boolean doAnimationFrame(long frameTime) {
+                    return update(frameTime);
+                }
+            };
 }
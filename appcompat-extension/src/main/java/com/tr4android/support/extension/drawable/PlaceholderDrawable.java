@@ -1,6 +1,7 @@
 package com.tr4android.support.extension.drawable;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.ColorFilter;
 import android.graphics.Paint;
@@ -36,6 +37,11 @@ public class PlaceholderDrawable extends Drawable {
     // placeholder text (usually the first letter of a name)
     private String mPlaceholderText = "";
 
+    // vertical offset from the center to the baseline of the placeholder text
+    private float mPlaceholderTextOffset;
+
+    // the pre-rendered tile of a text placeholder (if any)
+    private Bitmap mTile;
 
     public PlaceholderDrawable(int placeholderTextSize, int placeholderTextColor,
                                int placeholderImageSize, int placeholerImageColor) {
@@ -47,6 +53,55 @@ public class PlaceholderDrawable extends Drawable {
         mPlaceholderTextPaint.setTextAlign(Paint.Align.CENTER);
         mPlaceholderTextPaint.setTextSize(placeholderTextSize);
         mPlaceholderTextPaint.setColor(placeholderTextColor);
+        mPlaceholderTextOffset = -(mPlaceholderTextPaint.descent() + mPlaceholderTextPaint.ascent()) / 2f;
+    }
+
+    /**
+     * Set the maximum size in bytes of the text placeholder tiles kept by the cache shared by
+     * all placeholder drawables. Text placeholders are rendered into a tile once and then drawn
+     * with a single bitmap draw. Defaults to 2 MiB.
+     *
+     * @param maxBytes the maximum size in bytes or 0 to disable the cache
+     */
+    public static void setTileCacheMaxSize(int maxBytes) {
+        PlaceholderTileCache.setMaxSize(maxBytes);
+    }
+
+    /**
+     * Get the maximum size in bytes of the text placeholder tiles kept by the shared cache
+     *
+     * @return the maximum size in bytes, 0 if the cache is disabled
+     */
+    public static int getTileCacheMaxSize() {
+        return PlaceholderTileCache.getMaxSize();
+    }
+
+    /**
+     * @return the current size in bytes of the tiles in the shared cache
+     */
+    public static int getTileCacheSize() {
+        return PlaceholderTileCache.getSize();
+    }
+
+    /**
+     * @return the number of times a text placeholder tile was found in the shared cache
+     */
+    public static int getTileCacheHitCount() {
+        return PlaceholderTileCache.getHitCount();
+    }
+
+    /**
+     * @return the number of times a text placeholder tile had to be rendered
+     */
+    public static int getTileCacheMissCount() {
+        return PlaceholderTileCache.getMissCount();
+    }
+
+    /**
+     * Remove all tiles from the shared cache, e.g. when the app is trimming its memory.
+     */
+    public static void clearTileCache() {
+        PlaceholderTileCache.evictAll();
     }
 
     /**
@@ -63,6 +118,7 @@ public class PlaceholderDrawable extends Drawable {
         mPlaceholderImage = null;
         mPlaceholderText = placeholderText;
         mPlaceholderCirclePaint.setColor(circleColor);
+        mTile = null;
     }
 
     /**
@@ -75,19 +131,59 @@ public class PlaceholderDrawable extends Drawable {
         mPlaceholderImage = tintDrawable(drawable, mPlaceholderImageColor);
         mPlaceholderText = "";
         mPlaceholderCirclePaint.setColor(circleColor);
+        mTile = null;
     }
 
     @Override
     public void draw(Canvas canvas) {
         Rect bounds = getBounds();
+        if (canUseTile(bounds)) {
+            if (mTile == null) {
+                mTile = getTile(bounds.width(), bounds.height());
+            }
+            canvas.drawBitmap(mTile, bounds.left, bounds.top, null);
+        } else {
+            drawPlaceholder(canvas, bounds);
+        }
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        mTile = null;
+    }
+
+    // Helper that checks whether a text placeholder can be drawn from a tile as is
+    private boolean canUseTile(Rect bounds) {
+        return mPlaceholderImage == null && mPlaceholderText != null
+                && PlaceholderTileCache.isEnabled() && !bounds.isEmpty()
+                && mPlaceholderCirclePaint.getAlpha() == 255
+                && mPlaceholderCirclePaint.getColorFilter() == null;
+    }
+
+    // Helper that returns the shared tile for the current text placeholder, rendering it if needed
+    private Bitmap getTile(int width, int height) {
+        PlaceholderTileCache.Key key = new PlaceholderTileCache.Key(mPlaceholderText,
+                mPlaceholderCirclePaint.getColor(), mPlaceholderTextPaint.getColor(),
+                mPlaceholderTextPaint.getTextSize(), width, height);
+        Bitmap tile = PlaceholderTileCache.get(key);
+        if (tile == null) {
+            tile = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            drawPlaceholder(new Canvas(tile), new Rect(0, 0, width, height));
+            PlaceholderTileCache.put(key, tile);
+        }
+        return tile;
+    }
+
+    // Helper that draws the placeholder circle and text or icon
+    private void drawPlaceholder(Canvas canvas, Rect bounds) {
         // draw placeholder circle
         float radius = Math.min(bounds.width(), bounds.height()) / 2f;
         float xPos = bounds.left + (bounds.width() / 2f);
         canvas.drawCircle(xPos, bounds.top + bounds.height() / 2f, radius, mPlaceholderCirclePaint);
         if (mPlaceholderImage == null) {
             // draw placeholder text
-            float yPos = (bounds.top + (bounds.height() / 2f) -
-                    ((mPlaceholderTextPaint.descent() + mPlaceholderTextPaint.ascent()) / 2f));
+            float yPos = bounds.top + (bounds.height() / 2f) + mPlaceholderTextOffset;
             canvas.drawText(mPlaceholderText, xPos, yPos, mPlaceholderTextPaint);
         } else {
             // draw placeholder image
@@ -102,11 +198,13 @@ public class PlaceholderDrawable extends Drawable {
     @Override
     public void setAlpha(int i) {
         mPlaceholderCirclePaint.setAlpha(i);
+        mTile = null;
     }
 
     @Override
     public void setColorFilter(ColorFilter colorFilter) {
         mPlaceholderCirclePaint.setColorFilter(colorFilter);
+        mTile = null;
     }
 
     @Override
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.drawable;
+
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+
+/**
+ * A process-wide cache of pre-rendered text placeholder tiles shared by all
+ * {@link PlaceholderDrawable} instances, bounded by the number of bytes of the cached tiles.
+ * The least recently used tiles are evicted once the maximum size is reached.
+ */
+final class PlaceholderTileCache {
+    /** The default maximum size in bytes, about 36 tiles of 40dp on an xxhdpi screen. */
+    static final int DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+
+    private static final LruCache<Key, Bitmap> sTiles = new LruCache<Key, Bitmap>(DEFAULT_MAX_BYTES) {
+        @Override
+        protected int sizeOf(Key key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+    private static boolean sEnabled = true;
+
+    private PlaceholderTileCache() {
+    }
+
+    static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    static Bitmap get(Key key) {
+        return sTiles.get(key);
+    }
+
+    static void put(Key key, Bitmap tile) {
+        sTiles.put(key, tile);
+    }
+
+    /**
+     * @param maxBytes the maximum size in bytes of the cached tiles, 0 disables the cache
+     */
+    static void setMaxSize(int maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative");
+        }
+        sEnabled = maxBytes > 0;
+        if (sEnabled) {
+            sTiles.resize(maxBytes);
+        } else {
+            sTiles.evictAll();
+        }
+    }
+
+    static int getMaxSize() {
+        return sEnabled ? sTiles.maxSize() : 0;
+    }
+
+    static int getSize() {
+        return sTiles.size();
+    }
+
+    static int getHitCount() {
+        return sTiles.hitCount();
+    }
+
+    static int getMissCount() {
+        return sTiles.missCount();
+    }
+
+    static void evictAll() {
+        sTiles.evictAll();
+    }
+
+    /**
+     * Everything that affects the appearance of a text placeholder tile.
+     */
+    static final class Key {
+        private final String mText;
+        private final int mCircleColor;
+        private final int mTextColor;
+        private final float mTextSize;
+        private final int mWidth;
+        private final int mHeight;
+
+        Key(String text, int circleColor, int textColor, float textSize, int width, int height) {
+            mText = text;
+            mCircleColor = circleColor;
+            mTextColor = textColor;
+            mTextSize = textSize;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return mCircleColor == other.mCircleColor && mTextColor == other.mTextColor
+                    && mTextSize == other.mTextSize && mWidth == other.mWidth
+                    && mHeight == other.mHeight && mText.equals(other.mText);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mText.hashCode();
+            result = 31 * result + mCircleColor;
+            result = 31 * result + mTextColor;
+            result = 31 * result + Float.floatToIntBits(mTextSize);
+            result = 31 * result + mWidth;
+            result = 31 * result + mHeight;
+            return result;
+        }
+    }
+}
@@ -31,7 +31,10 @@ import com.tr4android.support.extension.widget.CircleImageView;
 /**
  * Class representing an account for displaying in the {@link AccountHeaderView}
  */
-public class Account implements IAccount {
+public class Account implements IStableAccount {
+    // Stable id
+    private long mId = NO_ID;
+
     // Icon
     private Bitmap mIconBitmap;
     private Drawable mIconDrawable;
@@ -59,6 +62,14 @@ public class Account implements IAccount {
     public Account() {
     }
 
+    public Account setId(long mId) {
+        if (mId < 0 && mId != NO_ID) {
+            throw new IllegalArgumentException("Stable account ids must not be negative: " + mId);
+        }
+        this.mId = mId;
+        return this;
+    }
+
     public Account setIconBitmap(Bitmap mIconBitmap) {
         this.mIconBitmap = mIconBitmap;
         return this;
@@ -119,6 +130,11 @@ public class Account implements IAccount {
         mChecked = checked;
     }
 
+    @Override
+    public long getId() {
+        return mId;
+    }
+
     public Bitmap getIconBitmap() {
         return mIconBitmap;
     }
@@ -22,10 +22,16 @@ import android.graphics.drawable.Drawable;
 import android.graphics.drawable.ShapeDrawable;
 import android.graphics.drawable.StateListDrawable;
 import android.graphics.drawable.shapes.OvalShape;
+import android.os.AsyncTask;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.graphics.drawable.DrawableCompat;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.AppCompatDrawableManager;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -43,7 +49,11 @@ import com.tr4android.support.extension.widget.CircleImageView;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Adapter for accounts
@@ -52,77 +62,198 @@ public class AccountAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
     private static final int VIEW_TYPE_ACCOUNT = 0;
     private static final int VIEW_TYPE_HEADER = 1;
 
-    private List<IAccount> mAccounts;
+    // Item ids of the items that don't represent an account
+    private static final long ID_HEADER = -2;
+    private static final long ID_ACCOUNT_ADD = -3;
+    private static final long ID_ACCOUNT_MANAGE = -4;
+
+    /**
+     * Payload for rebinding only the check state of an account.
+     *
+     * @since 0.6.0
+     */
+    public static final Object PAYLOAD_CHECKED = new Object();
+
+    /**
+     * Payload for rebinding only the info icon and text of an account.
+     *
+     * @since 0.6.0
+     */
+    public static final Object PAYLOAD_INFO = new Object();
+
+    // Lists with more accounts than this are diffed in the background
+    private static final int MAX_MAIN_THREAD_DIFF_SIZE = 100;
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static final Executor sDiffExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
+
+    // Number of filter results added to the list at once
+    private static final int DEFAULT_FILTER_PAGE_SIZE = 50;
+
+    // The next page of filter results is added once an item this close to the end is bound
+    private static final int FILTER_PAGE_PREFETCH_DISTANCE = 10;
+
+    private AccountStore mAccounts;
+
+    // Incremented for every modification, used to detect stale background diffs
+    private int mModificationCount;
+
+    // Incremented for every submitted list, used to drop superseded background diffs
+    private int mSubmitCount;
+
+    // Translates account list updates to adapter notifications
+    private final ListUpdateCallback mUpdateCallback = new AccountUpdateCallback();
+
+    // Item ids of account instances without a stable id, counting down from below the reserved
+    // ids. Stable ids are non-negative, so neither can collide. Dropped with their accounts.
+    private final IdentityHashMap<IAccount, Long> mInstanceIds = new IdentityHashMap<>();
+    private long mNextInstanceId = ID_ACCOUNT_MANAGE - 1;
+
+    // View holders inflated ahead of time by prefetchViewHolder()
+    private final ArrayList<AccountViewHolder> mPrefetchedViewHolders = new ArrayList<>();
+
+    // Check box drawable and tints shared by all view holders (pre-Lollipop only)
+    private Drawable.ConstantState mCheckBoxButtonState;
+    private ColorStateList mCheckBoxButtonTint;
+    private int mCheckBoxBackgroundTint;
+
     private AccountHeaderView mHeader;
 
     private boolean mShowAccountAdd;
     private boolean mShowAccountManage;
     private boolean mShowCheckBoxes;
 
+    // The current filter query, null if all accounts are shown
+    private String mFilterQuery;
+
+    // Ascending indices of the accounts matching the filter, of which the first
+    // mFilterShownCount are shown in the list
+    private int[] mFilterResults = new int[0];
+    private int mFilterResultCount;
+    private int mFilterShownCount;
+    private int mFilterPageSize = DEFAULT_FILTER_PAGE_SIZE;
+    private boolean mIsFilterPageScheduled;
+
+    // The modification count the filter results were computed for
+    private int mFilterModificationCount;
+
     private final View.OnClickListener mAccountClickListener = new View.OnClickListener() {
         @Override
         public void onClick(View view) {
-            mHeader.handleAccountClick((Integer) view.getTag());
+            int position = ((RecyclerView.ViewHolder) view.getTag()).getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) mHeader.handleAccountClick(position);
         }
     };
 
     private final CompoundButton.OnCheckedChangeListener mAccountCheckListener = new CompoundButton.OnCheckedChangeListener() {
         @Override
         public void onCheckedChanged(CompoundButton view, boolean isChecked) {
-            int position = (Integer) ((View) view.getParent()).getTag();
-            mAccounts.get(position).setChecked(isChecked);
-            mHeader.handleAccountCheck(position, isChecked);
+            int position = ((RecyclerView.ViewHolder) ((View) view.getParent()).getTag()).getAdapterPosition();
+            int index = getAccountIndex(position);
+            if (index < 0) return;
+            mAccounts.setChecked(index, isChecked);
+            mHeader.handleAccountCheck(index, isChecked);
+        }
+    };
+
+    private final Runnable mFilterPageRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mIsFilterPageScheduled = false;
+            if (mFilterQuery == null) return;
+            int shownCount = mFilterShownCount;
+            mFilterShownCount = Math.min(mFilterResultCount, shownCount + mFilterPageSize);
+            if (mFilterShownCount > shownCount) {
+                notifyItemRangeInserted(shownCount + 1, mFilterShownCount - shownCount);
+            }
         }
     };
 
     public AccountAdapter(ArrayList<IAccount> accounts, AccountHeaderView header, boolean showAccountAdd, boolean showAccountManage, boolean showCheckBoxes) {
-        mAccounts = accounts;
+        mAccounts = new AccountStore(accounts);
         mHeader = header;
         mShowAccountAdd = showAccountAdd;
         mShowAccountManage = showAccountManage;
         mShowCheckBoxes = showCheckBoxes;
+        setHasStableIds(true);
     }
 
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
         switch (viewType) {
             case VIEW_TYPE_ACCOUNT:
-                AccountViewHolder holder = new AccountViewHolder(LayoutInflater.from(parent.getContext())
-                        .inflate(R.layout.appcompat_extension_account_list_item, parent, false));
-                holder.itemView.setOnClickListener(mAccountClickListener);
-                return holder;
+                int prefetchedCount = mPrefetchedViewHolders.size();
+                if (prefetchedCount > 0) {
+                    return mPrefetchedViewHolders.remove(prefetchedCount - 1);
+                }
+                return createAccountViewHolder(parent);
             case VIEW_TYPE_HEADER:
                 return new HeaderViewHolder(mHeader);
         }
         return null;
     }
 
+    // Helper that inflates and sets up an account view holder
+    private AccountViewHolder createAccountViewHolder(ViewGroup parent) {
+        AccountViewHolder holder = new AccountViewHolder(LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.appcompat_extension_account_list_item, parent, false));
+        setupCheckBox(holder.checkView);
+        holder.itemView.setTag(holder);
+        holder.itemView.setOnClickListener(mAccountClickListener);
+        if (mShowCheckBoxes) holder.iconView.setOnClickListener(holder);
+        return holder;
+    }
+
+    /**
+     * Inflate an account view holder ahead of time, which will be used the next time the list
+     * needs a new account item. This allows moving the inflation cost of the first time the
+     * account list is shown to idle time.
+     *
+     * @param parent The RecyclerView the account list will be shown in.
+     * @since 0.6.0
+     */
+    public void prefetchViewHolder(ViewGroup parent) {
+        mPrefetchedViewHolders.add(createAccountViewHolder(parent));
+    }
+
+    /**
+     * @return The number of prefetched view holders that have not been used yet.
+     * @since 0.6.0
+     */
+    public int getPrefetchedViewHolderCount() {
+        return mPrefetchedViewHolders.size();
+    }
+
     @Override
     public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        onBindViewHolder(holder, position, Collections.emptyList());
+    }
+
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position, List<Object> payloads) {
         if (holder instanceof AccountViewHolder) {
             final AccountViewHolder accountViewHolder = (AccountViewHolder) holder;
-            holder.itemView.setTag(position);
-            if (position < getAccountCount()) {
-                IAccount account = mAccounts.get(position);
+            if (mFilterQuery != null && position >= mFilterShownCount - FILTER_PAGE_PREFETCH_DISTANCE) {
+                scheduleFilterPage();
+            }
+            int index = getAccountIndex(position);
+            if (index >= 0) {
+                IAccount account = mAccounts.get(index);
+                if (!payloads.isEmpty() && bindPayloads(accountViewHolder, account, payloads)) {
+                    return;
+                }
                 if (mShowCheckBoxes) {
-                    accountViewHolder.checkView.setOnCheckedChangeListener(null);
-                    accountViewHolder.checkView.setChecked(account.isChecked());
-                    accountViewHolder.checkView.setOnCheckedChangeListener(mAccountCheckListener);
+                    bindCheckBox(accountViewHolder, account);
                     accountViewHolder.checkView.setVisibility(View.VISIBLE);
-                    accountViewHolder.iconView.setOnClickListener(new View.OnClickListener() {
-                        @Override
-                        public void onClick(View v) {
-                            accountViewHolder.checkView.toggle();
-                        }
-                    });
                 }
                 // apply the account to the list item
                 AccountUtils.applyAccountIcon(account, accountViewHolder.iconView);
                 AccountUtils.applyAccountListTitle(account, accountViewHolder.nameView);
                 AccountUtils.applyAccountInfo(account, accountViewHolder.infoLayout,
                         accountViewHolder.infoIconView, accountViewHolder.infoTextView);
-            } else if (position == getItemCount() - 1 && mShowAccountManage) {
+            } else if (isAccountManagePosition(position)) {
                 // Manage accounts item
+                AccountUtils.cancelAccountIcon(accountViewHolder.iconView);
                 accountViewHolder.iconView.setCircleImageEnabled(false);
                 accountViewHolder.checkView.setVisibility(View.GONE);
                 accountViewHolder.iconView.setImageResource(R.drawable.ic_settings_black_24dp);
@@ -130,6 +261,7 @@ public class AccountAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
                 accountViewHolder.infoLayout.setVisibility(View.GONE);
             } else {
                 // Add account item
+                AccountUtils.cancelAccountIcon(accountViewHolder.iconView);
                 accountViewHolder.iconView.setCircleImageEnabled(false);
                 accountViewHolder.checkView.setVisibility(View.GONE);
                 accountViewHolder.iconView.setImageResource(R.drawable.ic_add_black_24dp);
@@ -139,9 +271,100 @@ public class AccountAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
         }
     }
 
+    // Helper that applies partial updates, returns false if a full rebind is needed
+    private boolean bindPayloads(AccountViewHolder holder, IAccount account, List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_CHECKED && payload != PAYLOAD_INFO) return false;
+        }
+        for (Object payload : payloads) {
+            if (payload == PAYLOAD_CHECKED) {
+                if (mShowCheckBoxes) bindCheckBox(holder, account);
+            } else {
+                AccountUtils.applyAccountInfo(account, holder.infoLayout,
+                        holder.infoIconView, holder.infoTextView);
+            }
+        }
+        return true;
+    }
+
+    // Helper that applies the check state without notifying the check listener
+    private void bindCheckBox(AccountViewHolder holder, IAccount account) {
+        holder.checkView.setOnCheckedChangeListener(null);
+        holder.checkView.setChecked(account.isChecked());
+        holder.checkView.setOnCheckedChangeListener(mAccountCheckListener);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        int index = getAccountIndex(position);
+        if (position == 0) {
+            return ID_HEADER;
+        } else if (index >= 0) {
+            return getAccountItemId(mAccounts.get(index));
+        } else if (isAccountManagePosition(position)) {
+            return ID_ACCOUNT_MANAGE;
+        } else {
+            return ID_ACCOUNT_ADD;
+        }
+    }
+
+    // Helper that returns the stable id of an account or an id assigned to its instance
+    private long getAccountItemId(IAccount account) {
+        long id = AccountUtils.getAccountId(account);
+        if (id >= 0) return id;
+        if (id != IStableAccount.NO_ID) {
+            throw new IllegalArgumentException("Stable account ids must not be negative: " + id);
+        }
+        Long instanceId = mInstanceIds.get(account);
+        if (instanceId == null) {
+            instanceId = mNextInstanceId--;
+            mInstanceIds.put(account, instanceId);
+        }
+        return instanceId;
+    }
+
     @Override
     public int getItemCount() {
-        return mAccounts.size() + (mShowAccountAdd ? 1 : 0) + (mShowAccountManage ? 1 : 0);
+        return getAccountItemCount() + (mShowAccountAdd ? 1 : 0) + (mShowAccountManage ? 1 : 0);
+    }
+
+    // Helper that returns the number of items showing the header or an account
+    private int getAccountItemCount() {
+        if (mFilterQuery == null || mAccounts.isEmpty()) return mAccounts.size();
+        return mFilterShownCount + 1;
+    }
+
+    /**
+     * Get the index of the account shown at an adapter position. Without a filter the index of
+     * an account equals its position.
+     *
+     * @param position The adapter position.
+     * @return The index of the account or -1 if the position shows the header, the add
+     * account or the manage accounts item.
+     * @since 0.6.0
+     */
+    public int getAccountIndex(int position) {
+        if (position <= 0) return -1;
+        if (mFilterQuery != null) {
+            return position <= mFilterShownCount ? mFilterResults[position - 1] : -1;
+        }
+        return position < mAccounts.size() ? position : -1;
+    }
+
+    // Helper that returns the adapter position of an account index or NO_POSITION if not shown
+    private int getAccountPosition(int index) {
+        if (mFilterQuery == null) return index;
+        int result = Arrays.binarySearch(mFilterResults, 0, mFilterShownCount, index);
+        return result >= 0 ? result + 1 : RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * @param position The adapter position.
+     * @return True if the position shows the manage accounts item. False otherwise.
+     * @since 0.6.0
+     */
+    public boolean isAccountManagePosition(int position) {
+        return mShowAccountManage && position == getItemCount() - 1;
     }
 
     @Override
@@ -149,7 +372,7 @@ public class AccountAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
         return (position == 0) ? VIEW_TYPE_HEADER : VIEW_TYPE_ACCOUNT;
     }
 
-    private static class AccountViewHolder extends RecyclerView.ViewHolder {
+    private static class AccountViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
         CircleImageView iconView;
         CheckBox checkView;
         TextView nameView;
@@ -165,7 +388,16 @@ public class AccountAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
             infoLayout = (LinearLayout) itemView.findViewById(R.id.info_layout);
             infoIconView = (ImageView) itemView.findViewById(R.id.info_icon);
             infoTextView = (TextView) itemView.findViewById(R.id.info_text);
-            setupCheckBox(checkView);
+        }
+
+        // Clicking the icon toggles the check box of accounts
+        @Override
+        public void onClick(View v) {
+            if (checkView.getVisibility() == View.VISIBLE) {
+                checkView.toggle();
+            } else {
+                itemView.performClick();
+            }
         }
     }
 
@@ -176,35 +408,124 @@ public class AccountAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
         }
     }
 
+    /**
+     * Translates updates of the account list to adapter notifications. The primary account
+     * (index 0) is hidden behind the header, so updates involving it are shifted to the
+     * first list item while the header itself is never notified.
+     */
+    private class AccountUpdateCallback implements ListUpdateCallback {
+        @Override
+        public void onInserted(int position, int count) {
+            if (count > 0) notifyItemRangeInserted(Math.max(position, 1), count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            if (count > 0) notifyItemRangeRemoved(Math.max(position, 1), count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            if (fromPosition == 0 || toPosition == 0) {
+                // the primary account changes, which shows up as a removal and an insertion
+                notifyItemRemoved(Math.max(fromPosition, 1));
+                notifyItemInserted(Math.max(toPosition, 1));
+            } else {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            if (position == 0) {
+                position++;
+                count--;
+            }
+            if (count > 0) notifyItemRangeChanged(position, count, payload);
+        }
+    }
+
+    /**
+     * Compares two account lists for {@link DiffUtil}.
+     */
+    private static class AccountDiffCallback extends DiffUtil.Callback {
+        private final List<IAccount> mOldAccounts;
+        private final List<IAccount> mNewAccounts;
+
+        AccountDiffCallback(List<IAccount> oldAccounts, List<IAccount> newAccounts) {
+            mOldAccounts = oldAccounts;
+            mNewAccounts = newAccounts;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldAccounts.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewAccounts.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return AccountUtils.isSameAccount(mOldAccounts.get(oldItemPosition),
+                    mNewAccounts.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return AccountUtils.isSameContent(mOldAccounts.get(oldItemPosition),
+                    mNewAccounts.get(newItemPosition));
+        }
+
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            IAccount oldAccount = mOldAccounts.get(oldItemPosition);
+            IAccount newAccount = mNewAccounts.get(newItemPosition);
+            if (!AccountUtils.isSameProfile(oldAccount, newAccount)) return null;
+            boolean sameCheck = oldAccount.isChecked() == newAccount.isChecked();
+            boolean sameInfo = AccountUtils.isSameInfo(oldAccount, newAccount);
+            if (sameCheck && !sameInfo) return PAYLOAD_INFO;
+            if (!sameCheck && sameInfo) return PAYLOAD_CHECKED;
+            return null;
+        }
+    }
+
     // Function for styling the CheckBox for all Android version
-    private static void setupCheckBox(CheckBox checkBox) {
+    private void setupCheckBox(CheckBox checkBox) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
             checkBox.setButtonDrawable(R.drawable.btn_checkbox_circle);
             checkBox.setBackgroundResource(R.drawable.btn_checkbox_circle_background);
         } else {
-            Context context = checkBox.getContext();
-            AppCompatDrawableManager dm = AppCompatDrawableManager.get();
-
-            StateListDrawable button = new StateListDrawable();
-            button.addState(new int[]{android.R.attr.state_checked},
-                    dm.getDrawable(context, R.drawable.ic_checkbox_circle_checked));
-            button.addState(new int[]{},
-                    dm.getDrawable(context, R.drawable.ic_checkbox_circle_unchecked));
-            ColorStateList buttonTint = new ColorStateList(new int[][]{ // states
-                    new int[]{android.R.attr.state_checked},
-                    new int[]{} // state_default
-            }, new int[]{ // colors
-                    ThemeUtils.getThemeAttrColor(context, R.attr.colorControlActivated),
-                    ThemeUtils.getThemeAttrColor(context, R.attr.colorControlNormal)
-            });
-            Drawable buttonCompat = DrawableCompat.wrap(button);
-            DrawableCompat.setTintList(buttonCompat, buttonTint);
+            if (mCheckBoxButtonState == null) {
+                // resolve the drawables and colors once and share them across view holders
+                Context context = checkBox.getContext();
+                AppCompatDrawableManager dm = AppCompatDrawableManager.get();
+
+                StateListDrawable button = new StateListDrawable();
+                button.addState(new int[]{android.R.attr.state_checked},
+                        dm.getDrawable(context, R.drawable.ic_checkbox_circle_checked));
+                button.addState(new int[]{},
+                        dm.getDrawable(context, R.drawable.ic_checkbox_circle_unchecked));
+                mCheckBoxButtonState = button.getConstantState();
+                mCheckBoxButtonTint = new ColorStateList(new int[][]{ // states
+                        new int[]{android.R.attr.state_checked},
+                        new int[]{} // state_default
+                }, new int[]{ // colors
+                        ThemeUtils.getThemeAttrColor(context, R.attr.colorControlActivated),
+                        ThemeUtils.getThemeAttrColor(context, R.attr.colorControlNormal)
+                });
+                mCheckBoxBackgroundTint = ThemeUtils.getThemeAttrColor(context, android.R.attr.colorBackground);
+            }
+
+            Drawable buttonCompat = DrawableCompat.wrap(mCheckBoxButtonState.newDrawable());
+            DrawableCompat.setTintList(buttonCompat, mCheckBoxButtonTint);
             checkBox.setButtonDrawable(buttonCompat);
 
             ShapeDrawable background = new ShapeDrawable(new OvalShape());
-            int backgroundTint = ThemeUtils.getThemeAttrColor(context, android.R.attr.colorBackground);
             Drawable backgroundCompat = DrawableCompat.wrap(background);
-            DrawableCompat.setTint(backgroundCompat, backgroundTint);
+            DrawableCompat.setTint(backgroundCompat, mCheckBoxBackgroundTint);
             ViewCompatUtils.setBackground(checkBox, backgroundCompat);
         }
     }
@@ -224,31 +545,51 @@ public class AccountAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
     // Functions for managing the accounts
     public void add(IAccount account) {
         mAccounts.add(account);
+        notifyAccountsInserted(mAccounts.size() - 1, 1);
     }
 
     public void addAll(IAccount... accounts) {
+        int start = mAccounts.size();
         mAccounts.addAll(Arrays.asList(accounts));
+        notifyAccountsInserted(start, accounts.length);
     }
 
     public void remove(IAccount account) {
         int index = indexOf(account);
         mAccounts.remove(index);
+        if (!mAccounts.contains(account)) mInstanceIds.remove(account);
+        notifyAccountsRemoved(index, 1);
     }
 
     public void insert(IAccount account, int position) {
         mAccounts.add(position, account);
+        notifyAccountsInserted(position, 1);
     }
 
     public void clear() {
+        int count = mAccounts.size();
         mAccounts.clear();
+        mInstanceIds.clear();
+        notifyAccountsRemoved(0, count);
     }
 
     public void move(IAccount account, int position) {
         int index = indexOf(account);
         mAccounts.remove(index);
         mAccounts.add(position, account);
+        mModificationCount++;
+        if (refreshFilter()) return;
+        if (index != position) mUpdateCallback.onMoved(index, position);
     }
 
+    /**
+     * Get the index of an account. Accounts are looked up by their
+     * {@link IStableAccount#getId() stable id} or by instance, using an index that is kept
+     * across lookups.
+     *
+     * @param account The account to look up.
+     * @return The index of the account or -1 if it isn't part of the accounts.
+     */
     public int indexOf(IAccount account) {
         return mAccounts.indexOf(account);
     }
@@ -262,28 +603,257 @@ public class AccountAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder
         return getAccounts();
     }
 
+    /**
+     * @return A read-only view of the accounts. Use the methods of the adapter to modify them,
+     * so the list and its filter are notified.
+     */
     public List<IAccount> getAccounts() {
-        return mAccounts;
+        return Collections.unmodifiableList(mAccounts);
     }
 
+    /**
+     * Replace the accounts. The accounts are copied, later modifications of the given list
+     * are not reflected in the adapter.
+     *
+     * @param accounts The new accounts.
+     */
     public void setAccounts(List<IAccount> accounts) {
+        mAccounts = new AccountStore(accounts);
+        retainInstanceIds();
+        mModificationCount++;
+        if (!refreshFilter()) notifyDataSetChanged();
+    }
+
+    /**
+     * Replace the accounts with a new list, notifying only about the accounts that were
+     * inserted, removed, moved or changed. Accounts are matched by their
+     * {@link IStableAccount#getId() stable id} or by instance. Large lists are compared in
+     * the background, in which case the accounts are replaced asynchronously.
+     *
+     * @param accounts       The new accounts.
+     * @param commitCallback Optional runnable that is run once the new accounts are applied.
+     * @since 0.6.0
+     */
+    public void submitList(List<IAccount> accounts, final Runnable commitCallback) {
+        final int submitCount = ++mSubmitCount;
+        final int modificationCount = mModificationCount;
+        final List<IAccount> oldAccounts = new ArrayList<>(mAccounts);
+        final AccountStore newAccounts = new AccountStore(accounts);
+        final AccountDiffCallback diffCallback = new AccountDiffCallback(oldAccounts, newAccounts);
+        if (oldAccounts.size() + newAccounts.size() <= MAX_MAIN_THREAD_DIFF_SIZE) {
+            applyDiff(newAccounts, DiffUtil.calculateDiff(diffCallback), commitCallback);
+            return;
+        }
+        sDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(diffCallback);
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (submitCount != mSubmitCount) {
+                            // superseded by a more recent list
+                            return;
+                        }
+                        if (modificationCount != mModificationCount) {
+                            // the accounts were modified meanwhile, the diff is stale
+                            mAccounts = newAccounts;
+                            retainInstanceIds();
+                            mModificationCount++;
+                            if (!refreshFilter()) notifyDataSetChanged();
+                            if (commitCallback != null) commitCallback.run();
+                        } else {
+                            applyDiff(newAccounts, result, commitCallback);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    // Helper that replaces the accounts and dispatches the updates of a diff
+    private void applyDiff(AccountStore accounts, DiffUtil.DiffResult result, Runnable commitCallback) {
+        boolean wasEmpty = mAccounts.isEmpty();
         mAccounts = accounts;
+        retainInstanceIds();
+        mModificationCount++;
+        if (refreshFilter()) {
+            // filtered positions don't match the diff, see refreshFilter()
+        } else if (wasEmpty || accounts.isEmpty()) {
+            // the header takes the place of the first item, so there is nothing to animate
+            notifyDataSetChanged();
+        } else {
+            result.dispatchUpdatesTo(mUpdateCallback);
+        }
+        if (commitCallback != null) commitCallback.run();
+    }
+
+    // Helper that drops the item ids of account instances that were replaced, the ids of
+    // instances that are part of the new accounts are kept so their items can be animated
+    private void retainInstanceIds() {
+        Iterator<IAccount> iterator = mInstanceIds.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (!mAccounts.contains(iterator.next())) iterator.remove();
+        }
+    }
+
+    // Helpers that notify about accounts inserted into or removed from the list
+    private void notifyAccountsInserted(int index, int count) {
+        mModificationCount++;
+        if (refreshFilter()) return;
+        if (count == mAccounts.size()) {
+            // the list was empty, see applyDiff()
+            notifyDataSetChanged();
+        } else {
+            mUpdateCallback.onInserted(index, count);
+        }
+    }
+
+    private void notifyAccountsRemoved(int index, int count) {
+        mModificationCount++;
+        if (refreshFilter()) return;
+        if (mAccounts.isEmpty()) {
+            // the list is now empty, see applyDiff()
+            notifyDataSetChanged();
+        } else {
+            mUpdateCallback.onRemoved(index, count);
+        }
     }
 
     public void setChecked(int position, boolean checked) {
-        mAccounts.get(position).setChecked(checked);
+        mAccounts.setChecked(position, checked);
+        notifyAccountIndexChanged(position, PAYLOAD_CHECKED);
+    }
+
+    /**
+     * Notify that the account at the given position was modified.
+     *
+     * @param position The position of the modified account.
+     * @param payload  {@link #PAYLOAD_CHECKED} or {@link #PAYLOAD_INFO} if only that part of the
+     *                 account was modified, null to rebind the whole account.
+     * @since 0.6.0
+     */
+    public void notifyAccountChanged(int position, Object payload) {
+        if (payload != PAYLOAD_INFO) mAccounts.updateChecked(position);
+        notifyAccountIndexChanged(position, payload);
+    }
+
+    // Helper that notifies about a changed account if it is shown
+    private void notifyAccountIndexChanged(int index, Object payload) {
+        int position = getAccountPosition(index);
+        if (position != RecyclerView.NO_POSITION) mUpdateCallback.onChanged(position, 1, payload);
     }
 
     public boolean isChecked(int position) {
-        return position == 0 || mAccounts.get(position).isChecked();
+        return position == 0 || mAccounts.isChecked(position);
     }
 
     public ArrayList<IAccount> getChecked() {
-        int size = mAccounts.size();
-        ArrayList<IAccount> checked = new ArrayList<>(size);
-        for (int i = 0; i < size; i++) {
-            if (isChecked(i)) checked.add(mAccounts.get(i));
+        ArrayList<IAccount> checked = mAccounts.getChecked();
+        if (!mAccounts.isEmpty() && (checked.isEmpty() || checked.get(0) != mAccounts.get(0))) {
+            // the primary account is always checked, see isChecked()
+            checked.add(0, mAccounts.get(0));
         }
         return checked;
     }
+
+    /**
+     * Filter the accounts shown in the list by a query matched against the name and email of
+     * the accounts, ignoring case. The primary account is shown in the header and not part of
+     * the results. Results are added to the list in pages while it is scrolled, and a query
+     * containing the previous one only searches the previous results, so the filter can be
+     * updated on every key stroke even for thousands of accounts.
+     *
+     * @param query The query or null to show all accounts.
+     * @since 0.6.0
+     */
+    public void setFilter(String query) {
+        if (TextUtils.isEmpty(query)) query = null;
+        if (TextUtils.equals(query, mFilterQuery)) return;
+        boolean refine = query != null && mFilterQuery != null
+                && mFilterModificationCount == mModificationCount
+                && AccountUtils.containsIgnoreCase(query, mFilterQuery);
+        mFilterQuery = query;
+        if (query != null) {
+            computeFilterResults(refine);
+            mFilterShownCount = Math.min(mFilterResultCount, mFilterPageSize);
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * @return The current filter query or null if all accounts are shown.
+     * @since 0.6.0
+     */
+    public String getFilter() {
+        return mFilterQuery;
+    }
+
+    /**
+     * @return The number of accounts matching the current filter, including those not yet
+     * added to the list.
+     * @since 0.6.0
+     */
+    public int getFilterResultCount() {
+        return mFilterQuery != null ? mFilterResultCount : Math.max(mAccounts.size() - 1, 0);
+    }
+
+    /**
+     * Set the number of filter results added to the list at once. Defaults to 50.
+     *
+     * @param pageSize The number of filter results per page.
+     * @since 0.6.0
+     */
+    public void setFilterPageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        mFilterPageSize = pageSize;
+    }
+
+    public int getFilterPageSize() {
+        return mFilterPageSize;
+    }
+
+    // Helper that computes the accounts matching the filter, optionally from the previous results
+    private void computeFilterResults(boolean refine) {
+        int count = 0;
+        if (refine) {
+            for (int i = 0; i < mFilterResultCount; i++) {
+                int index = mFilterResults[i];
+                if (AccountUtils.matchesQuery(mAccounts.get(index), mFilterQuery)) {
+                    mFilterResults[count++] = index;
+                }
+            }
+        } else {
+            int size = mAccounts.size();
+            if (mFilterResults.length < size) mFilterResults = new int[size];
+            // the primary account is shown in the header
+            for (int i = 1; i < size; i++) {
+                if (AccountUtils.matchesQuery(mAccounts.get(i), mFilterQuery)) {
+                    mFilterResults[count++] = i;
+                }
+            }
+        }
+        mFilterResultCount = count;
+        mFilterModificationCount = mModificationCount;
+    }
+
+    // Helper that recomputes the filter results after the accounts were modified, keeping the
+    // pages shown so far. Returns false if no filter is set.
+    private boolean refreshFilter() {
+        if (mFilterQuery == null) return false;
+        computeFilterResults(false);
+        mFilterShownCount = Math.min(mFilterResultCount, Math.max(mFilterShownCount, mFilterPageSize));
+        notifyDataSetChanged();
+        return true;
+    }
+
+    // Helper that adds the next page of filter results once the current layout pass is done
+    private void scheduleFilterPage() {
+        if (!mIsFilterPageScheduled && mFilterShownCount < mFilterResultCount) {
+            mIsFilterPageScheduled = true;
+            sMainHandler.post(mFilterPageRunnable);
+        }
+    }
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.internal;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+
+import com.tr4android.support.extension.widget.CircleImageView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps track of the icons requested from an {@link IAccountIconLoader} and the views waiting
+ * for them. Each account is requested only once, no matter how many views it is bound to, and
+ * recently delivered icons are kept so rebinding an account doesn't request it again.
+ * <p/>
+ * Must only be used on the main thread.
+ */
+final class AccountIconRequests {
+    private static final int MAX_CACHED_ICONS = 32;
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final IAccountIconLoader mLoader;
+
+    // The pending requests by account key
+    private final HashMap<Object, Request> mRequests = new HashMap<>();
+
+    // The request each view is waiting for
+    private final WeakHashMap<CircleImageView, Request> mTargets = new WeakHashMap<>();
+
+    // Recently delivered icons (bitmaps or drawables) by account key
+    private final LruCache<Object, Object> mIcons = new LruCache<>(MAX_CACHED_ICONS);
+
+    AccountIconRequests(IAccountIconLoader loader) {
+        mLoader = loader;
+    }
+
+    IAccountIconLoader getLoader() {
+        return mLoader;
+    }
+
+    /**
+     * Binds the icon of an account to a view, showing the account's placeholder while the
+     * icon is loading.
+     *
+     * @return true if the icon is provided by the loader, false if the account's own icon
+     * should be applied
+     */
+    boolean bind(IAccount account, CircleImageView view) {
+        Object key = getKey(account);
+        Request previous = mTargets.get(view);
+        if (previous != null && previous.mKey.equals(key) && mRequests.get(key) == previous) {
+            // still waiting for the same icon
+            return true;
+        }
+        unbind(view);
+
+        Object icon = mIcons.get(key);
+        if (icon == null) {
+            Request request = mRequests.get(key);
+            if (request == null) {
+                request = new Request(key, account);
+                mRequests.put(key, request);
+                if (!mLoader.requestIcon(account, request)) {
+                    mRequests.remove(key);
+                    return false;
+                }
+                if (mRequests.get(key) != request) {
+                    // the icon was delivered synchronously, without an icon the account's own
+                    // icon is applied instead of waiting for a request that is already done
+                    icon = mIcons.get(key);
+                    if (icon == null) return false;
+                }
+            }
+            if (icon == null) {
+                AccountUtils.applyAccountPlaceholder(account, view);
+                request.mTargetCount++;
+                mTargets.put(view, request);
+                return true;
+            }
+        }
+        applyIcon(view, icon);
+        return true;
+    }
+
+    /**
+     * Stops waiting for an icon on the given view, cancelling the request if no other view
+     * is waiting for it.
+     */
+    void unbind(CircleImageView view) {
+        Request request = mTargets.remove(view);
+        if (request != null && --request.mTargetCount <= 0 && mRequests.get(request.mKey) == request) {
+            mRequests.remove(request.mKey);
+            mLoader.cancelIcon(request.mAccount);
+        }
+    }
+
+    /**
+     * Drops the cached icon of an account and cancels its pending request, so the icon is
+     * requested again the next time the account is bound.
+     */
+    void invalidate(IAccount account) {
+        Object key = getKey(account);
+        mIcons.remove(key);
+        Request request = mRequests.remove(key);
+        if (request != null) {
+            // the views waiting for it are rebound by whoever changed the account
+            mTargets.values().removeAll(Collections.singleton(request));
+            mLoader.cancelIcon(request.mAccount);
+        }
+    }
+
+    /**
+     * Cancels all pending requests, e.g. when the loader is replaced.
+     */
+    void cancelAll() {
+        for (Request request : mRequests.values()) {
+            mLoader.cancelIcon(request.mAccount);
+        }
+        mRequests.clear();
+        mTargets.clear();
+        mIcons.evictAll();
+    }
+
+    // Applies a delivered icon to all views waiting for it
+    private void onIconDelivered(Request request, Object icon) {
+        if (mRequests.get(request.mKey) != request) {
+            // cancelled in the meantime
+            return;
+        }
+        mRequests.remove(request.mKey);
+        if (icon == null) {
+            // keep showing the placeholder
+            mTargets.values().removeAll(Collections.singleton(request));
+            return;
+        }
+        mIcons.put(request.mKey, icon);
+        ArrayList<CircleImageView> views = new ArrayList<>(request.mTargetCount);
+        for (Map.Entry<CircleImageView, Request> entry : mTargets.entrySet()) {
+            if (entry.getValue() == request) views.add(entry.getKey());
+        }
+        for (CircleImageView view : views) {
+            mTargets.remove(view);
+            applyIcon(view, icon);
+        }
+    }
+
+    // Drawables hold per view state (bounds, callback, alpha), so each view gets its own copy
+    private static void applyIcon(CircleImageView view, Object icon) {
+        if (icon instanceof Bitmap) {
+            view.setImageBitmap((Bitmap) icon);
+        } else {
+            Drawable drawable = (Drawable) icon;
+            Drawable.ConstantState state = drawable.getConstantState();
+            if (state != null) {
+                drawable = state.newDrawable(view.getResources()).mutate();
+            }
+            view.setImageDrawable(drawable);
+        }
+    }
+
+    // Accounts with a stable id are deduplicated by id, all others by instance
+    private static Object getKey(IAccount account) {
+        long id = AccountUtils.getAccountId(account);
+        return id != IStableAccount.NO_ID ? (Object) id : new InstanceKey(account);
+    }
+
+    /**
+     * Key of an account without a stable id, which is compared by identity regardless of how
+     * the account implements {@link Object#equals(Object)}.
+     */
+    private static final class InstanceKey {
+        final IAccount mAccount;
+
+        InstanceKey(IAccount account) {
+            mAccount = account;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof InstanceKey && ((InstanceKey) o).mAccount == mAccount;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(mAccount);
+        }
+    }
+
+    /**
+     * A pending icon request, also acting as the callback handed to the loader.
+     */
+    private final class Request implements IAccountIconLoader.IconCallback {
+        final Object mKey;
+        final IAccount mAccount;
+        int mTargetCount;
+
+        Request(Object key, IAccount account) {
+            mKey = key;
+            mAccount = account;
+        }
+
+        @Override
+        public void deliverIcon(Bitmap icon) {
+            deliver(icon);
+        }
+
+        @Override
+        public void deliverIcon(Drawable icon) {
+            deliver(icon);
+        }
+
+        @Override
+        public void deliverFailure() {
+            deliver(null);
+        }
+
+        private void deliver(final Object icon) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                onIconDelivered(this, icon);
+            } else {
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onIconDelivered(Request.this, icon);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.internal;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.ViewGroup;
+
+import java.util.List;
+
+/**
+ * Adapter that merges the menu adapter of a NavigationView with an {@link AccountAdapter}.
+ * The first item (the header containing the
+ * {@link com.tr4android.support.extension.widget.AccountHeaderView}) is always taken from the
+ * menu adapter and followed by either the remaining menu items or the account items, so
+ * switching between the menu and the account list is a change of the items below the header.
+ *
+ * @since 0.6.0
+ */
+public class AccountMenuAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+    // Added to the view types of the account adapter to keep them apart from the menu ones
+    private static final int ACCOUNT_VIEW_TYPE_OFFSET = 100;
+
+    private final RecyclerView.Adapter<RecyclerView.ViewHolder> mMenuAdapter;
+    private final AccountAdapter mAccountAdapter;
+
+    // Whether the account items are shown instead of the menu items
+    private boolean mIsShowingAccounts;
+
+    private final RecyclerView.AdapterDataObserver mMenuObserver = new SectionObserver(false);
+    private final RecyclerView.AdapterDataObserver mAccountObserver = new SectionObserver(true);
+
+    @SuppressWarnings("unchecked")
+    public AccountMenuAdapter(RecyclerView.Adapter menuAdapter, AccountAdapter accountAdapter) {
+        mMenuAdapter = menuAdapter;
+        mAccountAdapter = accountAdapter;
+        mMenuAdapter.registerAdapterDataObserver(mMenuObserver);
+        mAccountAdapter.registerAdapterDataObserver(mAccountObserver);
+    }
+
+    /**
+     * Stop observing the merged adapters, e.g. before restoring the menu adapter.
+     *
+     * @since 0.6.0
+     */
+    public void release() {
+        mMenuAdapter.unregisterAdapterDataObserver(mMenuObserver);
+        mAccountAdapter.unregisterAdapterDataObserver(mAccountObserver);
+    }
+
+    public RecyclerView.Adapter getMenuAdapter() {
+        return mMenuAdapter;
+    }
+
+    public boolean isShowingAccounts() {
+        return mIsShowingAccounts;
+    }
+
+    /**
+     * Switch between the menu items and the account items below the header. The switch is
+     * notified as a removal and an insertion of items, so it is animated by the item animator.
+     *
+     * @param showAccounts True to show the account items, false to show the menu items.
+     * @since 0.6.0
+     */
+    public void setShowingAccounts(boolean showAccounts) {
+        if (mIsShowingAccounts == showAccounts) return;
+        int oldCount = getSectionCount();
+        mIsShowingAccounts = showAccounts;
+        int newCount = getSectionCount();
+        if (mMenuAdapter.getItemCount() == 0) {
+            notifyDataSetChanged();
+            return;
+        }
+        if (oldCount > 0) notifyItemRangeRemoved(1, oldCount);
+        if (newCount > 0) notifyItemRangeInserted(1, newCount);
+    }
+
+    // Helper that returns the number of items below the header
+    private int getSectionCount() {
+        RecyclerView.Adapter adapter = mIsShowingAccounts ? mAccountAdapter : mMenuAdapter;
+        return Math.max(adapter.getItemCount() - 1, 0);
+    }
+
+    // Helper that checks whether the position belongs to the account adapter
+    private boolean isAccountPosition(int position) {
+        return mIsShowingAccounts && position > 0;
+    }
+
+    @Override
+    public int getItemCount() {
+        if (mMenuAdapter.getItemCount() == 0) return 0;
+        return 1 + getSectionCount();
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        if (isAccountPosition(position)) {
+            return mAccountAdapter.getItemViewType(position) + ACCOUNT_VIEW_TYPE_OFFSET;
+        }
+        return mMenuAdapter.getItemViewType(position);
+    }
+
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        if (viewType >= ACCOUNT_VIEW_TYPE_OFFSET) {
+            return mAccountAdapter.onCreateViewHolder(parent, viewType - ACCOUNT_VIEW_TYPE_OFFSET);
+        }
+        return mMenuAdapter.onCreateViewHolder(parent, viewType);
+    }
+
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        if (isAccountPosition(position)) {
+            mAccountAdapter.onBindViewHolder(holder, position);
+        } else {
+            mMenuAdapter.onBindViewHolder(holder, position);
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position, List<Object> payloads) {
+        if (isAccountPosition(position)) {
+            mAccountAdapter.onBindViewHolder(holder, position, payloads);
+        } else {
+            mMenuAdapter.onBindViewHolder(holder, position, payloads);
+        }
+    }
+
+    @Override
+    public void onViewRecycled(RecyclerView.ViewHolder holder) {
+        if (holder.getItemViewType() >= ACCOUNT_VIEW_TYPE_OFFSET) {
+            mAccountAdapter.onViewRecycled(holder);
+        } else {
+            mMenuAdapter.onViewRecycled(holder);
+        }
+    }
+
+    /**
+     * Forwards the notifications of one of the merged adapters while its items are shown.
+     * Notifications about the header of the account adapter are dropped, as the header is
+     * always taken from the menu adapter.
+     */
+    private class SectionObserver extends RecyclerView.AdapterDataObserver {
+        private final boolean mIsAccountSection;
+
+        SectionObserver(boolean isAccountSection) {
+            mIsAccountSection = isAccountSection;
+        }
+
+        // Helper that checks whether the observed items are currently shown
+        private boolean isShown() {
+            return mIsShowingAccounts == mIsAccountSection;
+        }
+
+        // Helper that returns the first position that is forwarded
+        private int getFirstPosition() {
+            return mIsAccountSection ? 1 : 0;
+        }
+
+        @Override
+        public void onChanged() {
+            if (isShown()) notifyDataSetChanged();
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            if (!isShown()) return;
+            int start = Math.max(positionStart, getFirstPosition());
+            int count = itemCount - (start - positionStart);
+            if (count > 0) notifyItemRangeChanged(start, count, payload);
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            onItemRangeChanged(positionStart, itemCount, null);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            if (!isShown()) return;
+            if (positionStart < getFirstPosition()) {
+                notifyDataSetChanged();
+            } else {
+                notifyItemRangeInserted(positionStart, itemCount);
+            }
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            if (!isShown()) return;
+            if (positionStart < getFirstPosition()) {
+                notifyDataSetChanged();
+            } else {
+                notifyItemRangeRemoved(positionStart, itemCount);
+            }
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            if (!isShown()) return;
+            if (fromPosition < getFirstPosition() || toPosition < getFirstPosition() || itemCount != 1) {
+                notifyDataSetChanged();
+            } else {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+        }
+    }
+}
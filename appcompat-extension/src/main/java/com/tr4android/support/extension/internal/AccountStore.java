@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.internal;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.RandomAccess;
+
+/**
+ * List of accounts backing the {@link AccountAdapter}, which indexes the positions of its
+ * accounts and the set of checked accounts, so looking up an account or collecting the checked
+ * accounts doesn't scan the whole list.
+ * <p>
+ * Accounts are indexed by their {@link IStableAccount#getId() stable id} or, if they don't have
+ * one, by identity, regardless of how they implement {@link Object#equals(Object)}.
+ * Modifications only invalidate the index behind the modified position, which is rebuilt by the
+ * next lookup, so appending accounts and repeated lookups are cheap and consecutive removals
+ * share a single rebuild. The keys of removed accounts are dropped right away. The checked set is read
+ * from the accounts when it is rebuilt after a modification, check state changes in between
+ * have to go through {@link #setChecked(int, boolean)} or {@link #updateChecked(int)}.
+ */
+final class AccountStore extends AbstractList<IAccount> implements RandomAccess {
+    private final ArrayList<IAccount> mAccounts;
+
+    // Positions of the accounts by stable id or instance, only valid below mIndexedCount
+    private final HashMap<Long, Integer> mIdPositions = new HashMap<>();
+    private final IdentityHashMap<IAccount, Integer> mInstancePositions = new IdentityHashMap<>();
+    private int mIndexedCount;
+
+    // Positions of the checked accounts, rebuilt if invalid
+    private final BitSet mChecked = new BitSet();
+    private boolean mIsCheckedValid;
+
+    AccountStore() {
+        mAccounts = new ArrayList<>();
+    }
+
+    AccountStore(Collection<? extends IAccount> accounts) {
+        mAccounts = new ArrayList<>(accounts);
+    }
+
+    @Override
+    public IAccount get(int index) {
+        return mAccounts.get(index);
+    }
+
+    @Override
+    public int size() {
+        return mAccounts.size();
+    }
+
+    @Override
+    public IAccount set(int index, IAccount account) {
+        IAccount previous = mAccounts.get(index);
+        unindex(index, previous);
+        mAccounts.set(index, account);
+        invalidate(index);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, IAccount account) {
+        mAccounts.add(index, account);
+        modCount++;
+        if (index == mAccounts.size() - 1) {
+            // appended, nothing in front of it has moved
+            if (mIndexedCount == index) indexPosition(index);
+            if (mIsCheckedValid) mChecked.set(index, account.isChecked());
+        } else {
+            invalidate(index);
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends IAccount> accounts) {
+        int start = mAccounts.size();
+        if (!mAccounts.addAll(accounts)) return false;
+        modCount++;
+        if (mIsCheckedValid) {
+            for (int i = start; i < mAccounts.size(); i++) {
+                if (mAccounts.get(i).isChecked()) mChecked.set(i);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public IAccount remove(int index) {
+        unindex(index, mAccounts.get(index));
+        IAccount removed = mAccounts.remove(index);
+        modCount++;
+        invalidate(index);
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0) return false;
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        mAccounts.clear();
+        modCount++;
+        clearPositions();
+        mIndexedCount = 0;
+        mChecked.clear();
+        mIsCheckedValid = true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Returns the position of the first account with the same stable id or, for accounts
+     * without one, of the same instance.
+     */
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof IAccount)) return -1;
+        IAccount account = (IAccount) o;
+        Integer position = getPosition(account);
+        if (position != null && position < mIndexedCount && isAccountAt(position, account)) {
+            return position;
+        }
+        if (mIndexedCount == mAccounts.size()) return -1;
+        indexAll();
+        position = getPosition(account);
+        return position != null && isAccountAt(position, account) ? position : -1;
+    }
+
+    boolean isChecked(int index) {
+        return mAccounts.get(index).isChecked();
+    }
+
+    void setChecked(int index, boolean checked) {
+        mAccounts.get(index).setChecked(checked);
+        if (mIsCheckedValid) mChecked.set(index, checked);
+    }
+
+    /**
+     * Update the checked set after the check state of an account was changed directly.
+     */
+    void updateChecked(int index) {
+        if (mIsCheckedValid) mChecked.set(index, mAccounts.get(index).isChecked());
+    }
+
+    /**
+     * @return The checked accounts in list order.
+     */
+    ArrayList<IAccount> getChecked() {
+        if (!mIsCheckedValid) {
+            mChecked.clear();
+            for (int i = 0; i < mAccounts.size(); i++) {
+                if (mAccounts.get(i).isChecked()) mChecked.set(i);
+            }
+            mIsCheckedValid = true;
+        }
+        ArrayList<IAccount> checked = new ArrayList<>(mChecked.cardinality() + 1);
+        for (int i = mChecked.nextSetBit(0); i >= 0; i = mChecked.nextSetBit(i + 1)) {
+            checked.add(mAccounts.get(i));
+        }
+        return checked;
+    }
+
+    // Helper that drops the index of all positions from the given position on
+    private void invalidate(int index) {
+        mIndexedCount = Math.min(mIndexedCount, index);
+        mIsCheckedValid = false;
+    }
+
+    // Helper that drops the key of an account that is about to leave the given position, so the
+    // index doesn't keep removed accounts alive. The key is kept if it still points to an
+    // indexed earlier position of the same account.
+    private void unindex(int index, IAccount account) {
+        Integer position = getPosition(account);
+        if (position != null && (position >= index || position >= mIndexedCount
+                || !isAccountAt(position, account))) {
+            removePosition(account);
+        }
+    }
+
+    // Helper that indexes all positions that aren't indexed yet
+    private void indexAll() {
+        if (mIndexedCount == 0) clearPositions();
+        for (int i = mIndexedCount; i < mAccounts.size(); i++) {
+            indexPosition(i);
+        }
+    }
+
+    // Helper that indexes a position, keeping an earlier position of the same account
+    private void indexPosition(int index) {
+        IAccount account = mAccounts.get(index);
+        Integer position = getPosition(account);
+        if (position == null || position >= index || !isAccountAt(position, account)) {
+            putPosition(account, index);
+        }
+        mIndexedCount = index + 1;
+    }
+
+    private boolean isAccountAt(int index, IAccount account) {
+        return index < mAccounts.size() && AccountUtils.isSameAccount(mAccounts.get(index), account);
+    }
+
+    // Accounts are indexed by their stable id or, if they don't have one, by identity
+    private Integer getPosition(IAccount account) {
+        long id = AccountUtils.getAccountId(account);
+        return id != IStableAccount.NO_ID ? mIdPositions.get(id) : mInstancePositions.get(account);
+    }
+
+    private void putPosition(IAccount account, int index) {
+        long id = AccountUtils.getAccountId(account);
+        if (id != IStableAccount.NO_ID) {
+            mIdPositions.put(id, index);
+        } else {
+            mInstancePositions.put(account, index);
+        }
+    }
+
+    private void removePosition(IAccount account) {
+        long id = AccountUtils.getAccountId(account);
+        if (id != IStableAccount.NO_ID) {
+            mIdPositions.remove(id);
+        } else {
+            mInstancePositions.remove(account);
+        }
+    }
+
+    private void clearPositions() {
+        mIdPositions.clear();
+        mInstancePositions.clear();
+    }
+}
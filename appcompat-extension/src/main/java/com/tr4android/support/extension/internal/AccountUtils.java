@@ -35,6 +35,58 @@ import com.tr4android.support.extension.widget.CircleImageView;
  */
 
 public class AccountUtils {
+    // The requests of the account icon loader (if any)
+    private static AccountIconRequests sIconRequests;
+
+    /**
+     * Set a loader for loading account icons asynchronously. Pending requests of a previously
+     * set loader are cancelled.
+     *
+     * @param loader The loader or null to only use the icons provided by the accounts.
+     * @since 0.6.0
+     */
+    public static void setAccountIconLoader(IAccountIconLoader loader) {
+        if (sIconRequests != null) {
+            sIconRequests.cancelAll();
+        }
+        sIconRequests = loader != null ? new AccountIconRequests(loader) : null;
+    }
+
+    /**
+     * Get the loader used for loading account icons asynchronously.
+     *
+     * @return The loader or null if none is set.
+     * @since 0.6.0
+     */
+    public static IAccountIconLoader getAccountIconLoader() {
+        return sIconRequests != null ? sIconRequests.getLoader() : null;
+    }
+
+    /**
+     * Stops waiting for an account icon on the given view, e.g. before the view is used for
+     * something else. The icon request is cancelled if no other view is waiting for it.
+     *
+     * @param iv The CircleImageView that no longer displays an account icon.
+     * @since 0.6.0
+     */
+    public static void cancelAccountIcon(CircleImageView iv) {
+        if (sIconRequests != null) {
+            sIconRequests.unbind(iv);
+        }
+    }
+
+    /**
+     * Drops the icon of an account that was loaded by the account icon loader, e.g. because the
+     * account's avatar changed. The icon is requested again the next time the account is bound.
+     *
+     * @param account The account whose icon changed.
+     * @since 0.6.0
+     */
+    public static void invalidateAccountIcon(IAccount account) {
+        if (sIconRequests != null) {
+            sIconRequests.invalidate(account);
+        }
+    }
 
     /**
      * Applies the account's name to the given TextView.
@@ -82,6 +134,9 @@ public class AccountUtils {
      */
     public static void applyAccountIcon(IAccount account, CircleImageView iv) {
         iv.setCircleImageEnabled(true);
+        if (sIconRequests != null && sIconRequests.bind(account, iv)) {
+            return;
+        }
         Drawable drawable = account.getIconDrawable();
         if (drawable != null) {
             iv.setImageDrawable(drawable);
@@ -90,15 +145,28 @@ public class AccountUtils {
             Bitmap iconBitmap = a.getIconBitmap();
             int iconResource = a.getIconResource();
             Uri iconUri = a.getIconUri();
-            boolean placeholderIconEnabled = a.getPlaceholderIconEnabled();
-            int placeholderCircleColor = a.getPlaceholderCircleColor();
             if (iconBitmap != null) {
                 iv.setImageBitmap(iconBitmap);
             } else if (iconResource != 0) {
                 iv.setImageResource(iconResource);
             } else if (iconUri != null) {
                 iv.setImageURI(iconUri);
-            } else if (placeholderIconEnabled) {
+            } else {
+                applyAccountPlaceholder(account, iv);
+            }
+        } else {
+            // fallback
+            applyAccountPlaceholder(account, iv);
+        }
+    }
+
+    // Applies the account's placeholder to the given CircleImageView
+    static void applyAccountPlaceholder(IAccount account, CircleImageView iv) {
+        if (account instanceof Account) {
+            Account a = (Account) account;
+            boolean placeholderIconEnabled = a.getPlaceholderIconEnabled();
+            int placeholderCircleColor = a.getPlaceholderCircleColor();
+            if (placeholderIconEnabled) {
                 if (placeholderCircleColor == -1) {
                     iv.setPlaceholder(R.drawable.ic_person_black_24dp);
                 } else {
@@ -112,11 +180,109 @@ public class AccountUtils {
                 }
             }
         } else {
-            // fallback
             iv.setPlaceholder(CircleImageView.retrieveLetter(account.getName()));
         }
     }
 
+    /**
+     * Get the stable id of an account.
+     *
+     * @param account The account that should be used.
+     * @return The stable id or {@link IStableAccount#NO_ID} if the account doesn't have one.
+     * @since 0.6.0
+     */
+    public static long getAccountId(IAccount account) {
+        return account instanceof IStableAccount ? ((IStableAccount) account).getId() : IStableAccount.NO_ID;
+    }
+
+    /**
+     * Checks whether two accounts represent the same account. Accounts with a stable id are
+     * compared by id, all other accounts by instance.
+     *
+     * @param first  The first account.
+     * @param second The second account.
+     * @return True if both represent the same account. False otherwise.
+     * @since 0.6.0
+     */
+    public static boolean isSameAccount(IAccount first, IAccount second) {
+        if (first == second) return true;
+        long id = getAccountId(first);
+        return id != IStableAccount.NO_ID && id == getAccountId(second);
+    }
+
+    /**
+     * Checks whether two accounts would be displayed the same way. An account instance is
+     * always considered to be unchanged, modifications of a single instance have to be
+     * notified explicitly.
+     *
+     * @param first  The first account.
+     * @param second The second account.
+     * @return True if both accounts are displayed the same way. False otherwise.
+     * @since 0.6.0
+     */
+    public static boolean isSameContent(IAccount first, IAccount second) {
+        return first == second || (first.isChecked() == second.isChecked()
+                && isSameProfile(first, second) && isSameInfo(first, second));
+    }
+
+    // Checks whether the icon, name and email of two accounts are the same
+    static boolean isSameProfile(IAccount first, IAccount second) {
+        if (first == second) return true;
+        if (!equals(first.getName(), second.getName())
+                || !equals(first.getEmail(), second.getEmail())
+                || first.getIconDrawable() != second.getIconDrawable()) {
+            return false;
+        }
+        if (first instanceof Account && second instanceof Account) {
+            Account a = (Account) first;
+            Account b = (Account) second;
+            return a.getIconBitmap() == b.getIconBitmap()
+                    && a.getIconResource() == b.getIconResource()
+                    && equals(a.getIconUri(), b.getIconUri())
+                    && a.getPlaceholderIconEnabled() == b.getPlaceholderIconEnabled()
+                    && a.getPlaceholderCircleColor() == b.getPlaceholderCircleColor();
+        }
+        return !(first instanceof Account) && !(second instanceof Account);
+    }
+
+    // Checks whether the info icon and text of two accounts are the same
+    static boolean isSameInfo(IAccount first, IAccount second) {
+        if (first == second) return true;
+        int firstInfoIconResource = first instanceof Account ? ((Account) first).getInfoIconResource() : 0;
+        int secondInfoIconResource = second instanceof Account ? ((Account) second).getInfoIconResource() : 0;
+        return firstInfoIconResource == secondInfoIconResource
+                && first.getInfoIconDrawable() == second.getInfoIconDrawable()
+                && equals(first.getInfoText(), second.getInfoText());
+    }
+
+    /**
+     * Checks whether the name or email of an account contains a query, ignoring case.
+     *
+     * @param account The account that should be checked.
+     * @param query   The query that should be searched for.
+     * @return True if the name or email contains the query. False otherwise.
+     * @since 0.6.0
+     */
+    public static boolean matchesQuery(IAccount account, String query) {
+        return containsIgnoreCase(account.getName(), query)
+                || containsIgnoreCase(account.getEmail(), query);
+    }
+
+    // Case-insensitive contains that doesn't allocate lower case copies of both strings
+    static boolean containsIgnoreCase(String text, String query) {
+        if (text == null) return false;
+        int length = query.length();
+        for (int i = text.length() - length; i >= 0; i--) {
+            if (text.regionMatches(true, i, query, 0, length)) return true;
+        }
+        return false;
+    }
+
+    // Null-safe equals
+    private static boolean equals(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
     /**
      * Applies the account's info to the given views.
      *
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.internal;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Interface for loading account icons asynchronously, e.g. remote avatars. Set a loader using
+ * {@link AccountUtils#setAccountIconLoader(IAccountIconLoader)}.
+ * <p/>
+ * Requests are deduplicated: while an icon is loading, binding the same account to more views
+ * (e.g. the header and the account list) doesn't request it again. The account's placeholder is
+ * shown until the icon is delivered.
+ *
+ * @since 0.6.0
+ */
+public interface IAccountIconLoader {
+    /**
+     * Start loading the icon of an account. Called on the main thread.
+     *
+     * @param account  The account whose icon should be loaded.
+     * @param callback The callback the icon should be delivered to.
+     * @return True if the icon is loaded by this loader. False to apply the icon provided by
+     * the account itself.
+     * @since 0.6.0
+     */
+    boolean requestIcon(IAccount account, IconCallback callback);
+
+    /**
+     * Cancel loading the icon of an account, because it isn't displayed anymore. The callback
+     * of the request is ignored afterwards. Called on the main thread.
+     *
+     * @param account The account whose icon should no longer be loaded.
+     * @since 0.6.0
+     */
+    void cancelIcon(IAccount account);
+
+    /**
+     * Callback for delivering a loaded icon. Exactly one of the methods should be called for
+     * each request, they may be called on any thread.
+     *
+     * @since 0.6.0
+     */
+    interface IconCallback {
+        /**
+         * Deliver the loaded icon as a bitmap.
+         *
+         * @param icon The icon.
+         * @since 0.6.0
+         */
+        void deliverIcon(Bitmap icon);
+
+        /**
+         * Deliver the loaded icon as a drawable.
+         *
+         * @param icon The icon.
+         * @since 0.6.0
+         */
+        void deliverIcon(Drawable icon);
+
+        /**
+         * Report that the icon couldn't be loaded. The account's placeholder is kept.
+         *
+         * @since 0.6.0
+         */
+        void deliverFailure();
+    }
+}
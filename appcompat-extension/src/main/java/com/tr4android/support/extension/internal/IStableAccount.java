@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.internal;
+
+/**
+ * An {@link IAccount} with a stable id. The id identifies the account across different
+ * instances, e.g. when a freshly synced list is submitted to the
+ * {@link com.tr4android.support.extension.widget.AccountHeaderView}. Accounts that don't
+ * implement this interface are identified by their instance.
+ *
+ * @since 0.6.0
+ */
+public interface IStableAccount extends IAccount {
+    /**
+     * Id for accounts that don't have a stable id (yet).
+     *
+     * @since 0.6.0
+     */
+    long NO_ID = -1;
+
+    /**
+     * Get the stable id. Two accounts with the same id are considered the same account. Stable
+     * ids must not be negative, negative ids are reserved for the items of the account list.
+     *
+     * @return The non-negative stable id or {@link #NO_ID} to identify the account by its
+     * instance.
+     * @since 0.6.0
+     */
+    long getId();
+}
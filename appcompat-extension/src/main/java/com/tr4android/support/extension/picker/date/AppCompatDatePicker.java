@@ -295,6 +295,42 @@ public class AppCompatDatePicker extends FrameLayout {
         return mDelegate.getFirstDayOfWeek();
     }
 
+    /**
+     * Sets the maximum number of month pages that are kept for rebinding
+     * after they have been scrolled off screen. Defaults to 3 pages.
+     *
+     * @param maxRecycledPages the maximum number of recycled pages, or
+     *                         {@code 0} to disable recycling
+     * @since 0.6.0
+     */
+    public void setMaxRecycledPages(int maxRecycledPages) {
+        mDelegate.setMaxRecycledPages(maxRecycledPages);
+    }
+
+    /**
+     * @return the maximum number of recycled month pages
+     * @since 0.6.0
+     */
+    public int getMaxRecycledPages() {
+        return mDelegate.getMaxRecycledPages();
+    }
+
+    /**
+     * @return the number of month pages that were rebound instead of inflated
+     * @since 0.6.0
+     */
+    public int getRecycledPageHitCount() {
+        return mDelegate.getRecycledPageHitCount();
+    }
+
+    /**
+     * @return the number of month pages that had to be inflated
+     * @since 0.6.0
+     */
+    public int getRecycledPageMissCount() {
+        return mDelegate.getRecycledPageMissCount();
+    }
+
     @Override
     protected void dispatchRestoreInstanceState(SparseArray<Parcelable> container) {
         dispatchThawSelfOnly(container);
@@ -333,6 +369,11 @@ public class AppCompatDatePicker extends FrameLayout {
         void setFirstDayOfWeek(int firstDayOfWeek);
         int getFirstDayOfWeek();
 
+        void setMaxRecycledPages(int maxRecycledPages);
+        int getMaxRecycledPages();
+        int getRecycledPageHitCount();
+        int getRecycledPageMissCount();
+
         void setMinDate(long minDate);
         Calendar getMinDate();
 
@@ -399,6 +399,26 @@ class AppCompatDatePickerDelegate extends AppCompatDatePicker.AbstractDatePicker
         return mCurrentDate.getFirstDayOfWeek();
     }
 
+    @Override
+    public void setMaxRecycledPages(int maxRecycledPages) {
+        mDayPickerView.setMaxRecycledPages(maxRecycledPages);
+    }
+
+    @Override
+    public int getMaxRecycledPages() {
+        return mDayPickerView.getMaxRecycledPages();
+    }
+
+    @Override
+    public int getRecycledPageHitCount() {
+        return mDayPickerView.getRecycledPageHitCount();
+    }
+
+    @Override
+    public int getRecycledPageMissCount() {
+        return mDayPickerView.getRecycledPageMissCount();
+    }
+
     @Override
     public void setEnabled(boolean enabled) {
         mContainer.setEnabled(enabled);
@@ -479,25 +499,7 @@ class AppCompatDatePickerDelegate extends AppCompatDatePicker.AbstractDatePicker
     }
 
     public static int getDaysInMonth(int month, int year) {
-        switch (month) {
-            case Calendar.JANUARY:
-            case Calendar.MARCH:
-            case Calendar.MAY:
-            case Calendar.JULY:
-            case Calendar.AUGUST:
-            case Calendar.OCTOBER:
-            case Calendar.DECEMBER:
-                return 31;
-            case Calendar.APRIL:
-            case Calendar.JUNE:
-            case Calendar.SEPTEMBER:
-            case Calendar.NOVEMBER:
-                return 30;
-            case Calendar.FEBRUARY:
-                return (year % 4 == 0) ? 29 : 28;
-            default:
-                throw new IllegalArgumentException("Invalid Month");
-        }
+        return MonthGrid.getDaysInMonth(month, year);
     }
 
     private void tryVibrate() {
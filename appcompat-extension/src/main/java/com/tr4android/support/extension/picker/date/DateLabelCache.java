@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.picker.date;
+
+import android.support.annotation.NonNull;
+
+import com.tr4android.support.extension.picker.DateFormatUtils;
+
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A process-wide cache of the localized labels displayed by the date picker, shared by all
+ * {@link SimpleMonthView} instances and the {@link DayPickerPagerAdapter}.
+ * <p>
+ * Labels are kept for a single locale only, requesting the cache for a different locale (e.g.
+ * after a configuration change) drops all previously cached labels.
+ */
+final class DateLabelCache {
+    private static final int DAYS_IN_WEEK = 7;
+    private static final int MONTHS_IN_YEAR = 12;
+    private static final int MAX_DAYS_IN_MONTH = 31;
+
+    /** The maximum number of years for which month titles are cached. */
+    private static final int MAX_CACHED_YEARS = 10;
+
+    private static final String DEFAULT_TITLE_FORMAT = "MMMMy";
+    private static final String DAY_OF_WEEK_FORMAT = "EEEEE";
+
+    private static DateLabelCache sInstance;
+
+    private final Locale mLocale;
+
+    private final String[] mDayLabels = new String[MAX_DAYS_IN_MONTH + 1];
+    private final String[] mDayOfWeekLabels = new String[DAYS_IN_WEEK];
+
+    private final SimpleDateFormat mTitleFormatter;
+    private final Calendar mTitleCalendar = Calendar.getInstance();
+
+    /** Month titles keyed by year, evicting the least recently used year. */
+    private final LinkedHashMap<Integer, String[]> mMonthTitles =
+            new LinkedHashMap<Integer, String[]>(MAX_CACHED_YEARS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+                    return size() > MAX_CACHED_YEARS;
+                }
+            };
+
+    private DateLabelCache(Locale locale) {
+        mLocale = locale;
+
+        final NumberFormat dayFormatter = NumberFormat.getIntegerInstance(locale);
+        for (int day = 1; day <= MAX_DAYS_IN_MONTH; day++) {
+            mDayLabels[day] = dayFormatter.format(day);
+        }
+
+        final SimpleDateFormat dayOfWeekFormatter = new SimpleDateFormat(DAY_OF_WEEK_FORMAT, locale);
+        final Calendar dayOfWeekCalendar = Calendar.getInstance();
+        for (int i = 0; i < DAYS_IN_WEEK; i++) {
+            // Matches the lenient (col + weekStart) % 7 indexing used by the month view.
+            dayOfWeekCalendar.set(Calendar.DAY_OF_WEEK, i);
+            mDayOfWeekLabels[i] = DateFormatUtils.formatDayOfWeek(dayOfWeekFormatter,
+                    dayOfWeekCalendar);
+        }
+
+        final String titleFormat = DateFormatUtils.getBestDateTimePattern(locale, DEFAULT_TITLE_FORMAT);
+        mTitleFormatter = new SimpleDateFormat(titleFormat, locale);
+    }
+
+    /**
+     * Returns the label cache for the specified locale, invalidating the labels of the
+     * previously used locale if it differs.
+     *
+     * @param locale the locale of the labels
+     * @return the shared label cache
+     */
+    static synchronized DateLabelCache getInstance(@NonNull Locale locale) {
+        if (sInstance == null || !sInstance.mLocale.equals(locale)) {
+            sInstance = new DateLabelCache(locale);
+        }
+        return sInstance;
+    }
+
+    Locale getLocale() {
+        return mLocale;
+    }
+
+    /**
+     * @param day the day of the month, from 1 to 31
+     * @return the localized day number
+     */
+    String getDayLabel(int day) {
+        return mDayLabels[day];
+    }
+
+    /**
+     * @param dayOfWeek the day of the week modulo 7, i.e. {@code 0} is
+     *                  {@link Calendar#SATURDAY}
+     * @return the localized (shortest) day of the week
+     */
+    String getDayOfWeekLabel(int dayOfWeek) {
+        return mDayOfWeekLabels[dayOfWeek];
+    }
+
+    /**
+     * @param month the month, from {@link Calendar#JANUARY} to {@link Calendar#DECEMBER}
+     * @param year the year
+     * @return the localized month title, e.g. "January 2015"
+     */
+    synchronized String getMonthTitle(int month, int year) {
+        String[] titles = mMonthTitles.get(year);
+        if (titles == null) {
+            titles = new String[MONTHS_IN_YEAR];
+            mMonthTitles.put(year, titles);
+        }
+
+        String title = titles[month];
+        if (title == null) {
+            mTitleCalendar.clear();
+            mTitleCalendar.set(year, month, 1);
+            title = DateFormatUtils.format(mTitleFormatter, mTitleCalendar);
+            titles[month] = title;
+        }
+        return title;
+    }
+}
@@ -32,19 +32,30 @@ import android.view.ViewGroup;
 import com.tr4android.appcompat.extension.R;
 import com.tr4android.support.extension.picker.date.SimpleMonthView.OnDayClickListener;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Locale;
 
 /**
  * An adapter for a list of {@link SimpleMonthView} items.
  */
 class DayPickerPagerAdapter extends PagerAdapter {
-    private static final int MONTHS_IN_YEAR = 12;
+    private static final int DEFAULT_MAX_RECYCLED_ITEMS = 3;
 
-    private final Calendar mMinDate = Calendar.getInstance();
-    private final Calendar mMaxDate = Calendar.getInstance();
+    // Date range as month indices and days of month.
+    private int mMinMonthIndex;
+    private int mMinDayOfMonth;
+    private int mMaxMonthIndex;
+    private int mMaxDayOfMonth;
 
     private final SparseArray<ViewHolder> mItems = new SparseArray<>();
 
+    /** Pages that have been destroyed and can be rebound to a new position. */
+    private final ArrayList<ViewHolder> mRecycledItems = new ArrayList<>();
+    private int mMaxRecycledItems = DEFAULT_MAX_RECYCLED_ITEMS;
+    private int mRecycledHitCount;
+    private int mRecycledMissCount;
+
     private final LayoutInflater mInflater;
     private final int mLayoutResId;
     private final int mCalendarViewId;
@@ -76,12 +87,13 @@ class DayPickerPagerAdapter extends PagerAdapter {
     }
 
     public void setRange(@NonNull Calendar min, @NonNull Calendar max) {
-        mMinDate.setTimeInMillis(min.getTimeInMillis());
-        mMaxDate.setTimeInMillis(max.getTimeInMillis());
-
-        final int diffYear = mMaxDate.get(Calendar.YEAR) - mMinDate.get(Calendar.YEAR);
-        final int diffMonth = mMaxDate.get(Calendar.MONTH) - mMinDate.get(Calendar.MONTH);
-        mCount = diffMonth + MONTHS_IN_YEAR * diffYear + 1;
+        final long minEpochDay = MonthGrid.toEpochDay(min.getTimeInMillis(), min.getTimeZone());
+        final long maxEpochDay = MonthGrid.toEpochDay(max.getTimeInMillis(), max.getTimeZone());
+        mMinMonthIndex = MonthGrid.getMonthIndex(minEpochDay);
+        mMinDayOfMonth = MonthGrid.getDayOfMonth(minEpochDay);
+        mMaxMonthIndex = MonthGrid.getMonthIndex(maxEpochDay);
+        mMaxDayOfMonth = MonthGrid.getDayOfMonth(maxEpochDay);
+        mCount = mMaxMonthIndex - mMinMonthIndex + 1;
 
         // Positions are now invalid, clear everything and start over.
         notifyDataSetChanged();
@@ -148,14 +160,17 @@ class DayPickerPagerAdapter extends PagerAdapter {
 
     void setDaySelectorColor(ColorStateList selectorColor) {
         mDaySelectorColor = selectorColor;
+        mRecycledItems.clear();
     }
 
     void setDayHighlightColor(ColorStateList highlightColor) {
         mDayHighlightColor = highlightColor;
+        mRecycledItems.clear();
     }
 
     void setMonthTextAppearance(int resId) {
         mMonthTextAppearance = resId;
+        mRecycledItems.clear();
     }
 
     int getMonthTextAppearance() {
@@ -164,6 +179,7 @@ class DayPickerPagerAdapter extends PagerAdapter {
 
     void setDayOfWeekTextAppearance(int resId) {
         mDayOfWeekTextAppearance = resId;
+        mRecycledItems.clear();
     }
 
     int getDayOfWeekTextAppearance() {
@@ -172,12 +188,50 @@ class DayPickerPagerAdapter extends PagerAdapter {
 
     void setDayTextAppearance(int resId) {
         mDayTextAppearance = resId;
+        mRecycledItems.clear();
     }
 
     int getDayTextAppearance() {
         return mDayTextAppearance;
     }
 
+    /**
+     * Sets the maximum number of destroyed pages that are kept around to be
+     * rebound instead of inflating new ones.
+     *
+     * @param maxRecycledItems the maximum number of recycled pages, or
+     *                         {@code 0} to disable recycling
+     */
+    void setMaxRecycledItems(int maxRecycledItems) {
+        if (maxRecycledItems < 0) {
+            throw new IllegalArgumentException("maxRecycledItems must be >= 0");
+        }
+
+        mMaxRecycledItems = maxRecycledItems;
+        while (mRecycledItems.size() > maxRecycledItems) {
+            mRecycledItems.remove(mRecycledItems.size() - 1);
+        }
+    }
+
+    int getMaxRecycledItems() {
+        return mMaxRecycledItems;
+    }
+
+    /**
+     * @return the number of pages that were rebound from the recycled pool
+     */
+    int getRecycledHitCount() {
+        return mRecycledHitCount;
+    }
+
+    /**
+     * @return the number of pages that had to be inflated because the
+     *         recycled pool was empty
+     */
+    int getRecycledMissCount() {
+        return mRecycledMissCount;
+    }
+
     @Override
     public int getCount() {
         return mCount;
@@ -190,12 +244,11 @@ class DayPickerPagerAdapter extends PagerAdapter {
     }
 
     private int getMonthForPosition(int position) {
-        return (position + mMinDate.get(Calendar.MONTH)) % MONTHS_IN_YEAR;
+        return MonthGrid.getMonthForMonthIndex(mMinMonthIndex + position);
     }
 
     private int getYearForPosition(int position) {
-        final int yearOffset = (position + mMinDate.get(Calendar.MONTH)) / MONTHS_IN_YEAR;
-        return yearOffset + mMinDate.get(Calendar.YEAR);
+        return MonthGrid.getYearForMonthIndex(mMinMonthIndex + position);
     }
 
     private int getPositionForDay(@Nullable Calendar day) {
@@ -203,14 +256,32 @@ class DayPickerPagerAdapter extends PagerAdapter {
             return -1;
         }
 
-        final int yearOffset = day.get(Calendar.YEAR) - mMinDate.get(Calendar.YEAR);
-        final int monthOffset = day.get(Calendar.MONTH) - mMinDate.get(Calendar.MONTH);
-        final int position = yearOffset * MONTHS_IN_YEAR + monthOffset;
-        return position;
+        return MonthGrid.getMonthIndex(MonthGrid.toEpochDay(day.getTimeInMillis(),
+                day.getTimeZone())) - mMinMonthIndex;
     }
 
     @Override
     public Object instantiateItem(ViewGroup container, int position) {
+        final ViewHolder holder;
+        final int recycledCount = mRecycledItems.size();
+        if (recycledCount > 0) {
+            holder = mRecycledItems.remove(recycledCount - 1);
+            holder.position = position;
+            mRecycledHitCount++;
+        } else {
+            holder = createViewHolder(container, position);
+            mRecycledMissCount++;
+        }
+
+        bindViewHolder(holder);
+        mItems.put(position, holder);
+
+        container.addView(holder.container);
+
+        return holder;
+    }
+
+    private ViewHolder createViewHolder(ViewGroup container, int position) {
         final View itemView = mInflater.inflate(mLayoutResId, container, false);
 
         final SimpleMonthView v = (SimpleMonthView) itemView.findViewById(mCalendarViewId);
@@ -227,6 +298,13 @@ class DayPickerPagerAdapter extends PagerAdapter {
             v.setDayHighlightColor(mDayHighlightColor);
         }
 
+        return new ViewHolder(position, itemView, v);
+    }
+
+    private void bindViewHolder(ViewHolder holder) {
+        final SimpleMonthView v = holder.calendar;
+        final int position = holder.position;
+
         final int month = getMonthForPosition(position);
         final int year = getYearForPosition(position);
 
@@ -237,29 +315,25 @@ class DayPickerPagerAdapter extends PagerAdapter {
             selectedDay = -1;
         }
 
+        final int monthIndex = mMinMonthIndex + position;
+
         final int enabledDayRangeStart;
-        if (mMinDate.get(Calendar.MONTH) == month && mMinDate.get(Calendar.YEAR) == year) {
-            enabledDayRangeStart = mMinDate.get(Calendar.DAY_OF_MONTH);
+        if (monthIndex == mMinMonthIndex) {
+            enabledDayRangeStart = mMinDayOfMonth;
         } else {
             enabledDayRangeStart = 1;
         }
 
         final int enabledDayRangeEnd;
-        if (mMaxDate.get(Calendar.MONTH) == month && mMaxDate.get(Calendar.YEAR) == year) {
-            enabledDayRangeEnd = mMaxDate.get(Calendar.DAY_OF_MONTH);
+        if (monthIndex == mMaxMonthIndex) {
+            enabledDayRangeEnd = mMaxDayOfMonth;
         } else {
             enabledDayRangeEnd = 31;
         }
 
         v.setMonthParams(selectedDay, month, year, mFirstDayOfWeek,
                 enabledDayRangeStart, enabledDayRangeEnd);
-
-        final ViewHolder holder = new ViewHolder(position, itemView, v);
-        mItems.put(position, holder);
-
-        container.addView(itemView);
-
-        return holder;
+        v.invalidate();
     }
 
     @Override
@@ -268,6 +342,10 @@ class DayPickerPagerAdapter extends PagerAdapter {
         container.removeView(holder.container);
 
         mItems.remove(position);
+
+        if (mRecycledItems.size() < mMaxRecycledItems) {
+            mRecycledItems.add(holder);
+        }
     }
 
     @Override
@@ -278,11 +356,9 @@ class DayPickerPagerAdapter extends PagerAdapter {
 
     @Override
     public CharSequence getPageTitle(int position) {
-        final SimpleMonthView v = mItems.get(position).calendar;
-        if (v != null) {
-            return v.getTitle();
-        }
-        return null;
+        final Locale locale = mInflater.getContext().getResources().getConfiguration().locale;
+        return DateLabelCache.getInstance(locale).getMonthTitle(
+                getMonthForPosition(position), getYearForPosition(position));
     }
 
     private final OnDayClickListener mOnDayClickListener = new OnDayClickListener() {
@@ -299,7 +375,7 @@ class DayPickerPagerAdapter extends PagerAdapter {
     };
 
     private static class ViewHolder {
-        public final int position;
+        public int position;
         public final View container;
         public final SimpleMonthView calendar;
 
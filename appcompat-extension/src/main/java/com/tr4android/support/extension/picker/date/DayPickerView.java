@@ -41,6 +41,7 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
 
 class DayPickerView extends ViewGroup {
     private static final int DEFAULT_LAYOUT = R.layout.day_picker_content_material;
@@ -316,8 +317,7 @@ class DayPickerView extends ViewGroup {
             mViewPager.setCurrentItem(position, animate);
         }
 
-        mTempCalendar.setTimeInMillis(timeInMillis);
-        mAdapter.setSelectedDay(mTempCalendar);
+        mAdapter.setSelectedDay(getTempCalendarForTime(timeInMillis));
     }
 
     public long getDate() {
@@ -332,6 +332,35 @@ class DayPickerView extends ViewGroup {
         return mAdapter.getFirstDayOfWeek();
     }
 
+    /**
+     * Sets the maximum number of month pages that are kept for rebinding
+     * after they have been scrolled off screen.
+     *
+     * @param maxRecycledPages the maximum number of recycled pages, or
+     *                         {@code 0} to disable recycling
+     */
+    public void setMaxRecycledPages(int maxRecycledPages) {
+        mAdapter.setMaxRecycledItems(maxRecycledPages);
+    }
+
+    public int getMaxRecycledPages() {
+        return mAdapter.getMaxRecycledItems();
+    }
+
+    /**
+     * @return the number of month pages that were rebound instead of inflated
+     */
+    public int getRecycledPageHitCount() {
+        return mAdapter.getRecycledHitCount();
+    }
+
+    /**
+     * @return the number of month pages that had to be inflated
+     */
+    public int getRecycledPageMissCount() {
+        return mAdapter.getRecycledMissCount();
+    }
+
     public void setMinDate(long timeInMillis) {
         mMinDate.setTimeInMillis(timeInMillis);
         onRangeChanged();
@@ -372,14 +401,17 @@ class DayPickerView extends ViewGroup {
         mOnDaySelectedListener = listener;
     }
 
-    private int getDiffMonths(Calendar start, Calendar end) {
-        final int diffYears = end.get(Calendar.YEAR) - start.get(Calendar.YEAR);
-        return end.get(Calendar.MONTH) - start.get(Calendar.MONTH) + 12 * diffYears;
+    private int getDiffMonths(long startMillis, long endMillis) {
+        // All dates of the picker share the time zone of the min date
+        final TimeZone zone = mMinDate.getTimeZone();
+        return MonthGrid.getMonthIndex(MonthGrid.toEpochDay(endMillis, zone))
+                - MonthGrid.getMonthIndex(MonthGrid.toEpochDay(startMillis, zone));
     }
 
     private int getPositionFromDay(long timeInMillis) {
-        final int diffMonthMax = getDiffMonths(mMinDate, mMaxDate);
-        final int diffMonth = getDiffMonths(mMinDate, getTempCalendarForTime(timeInMillis));
+        final long minDateMillis = mMinDate.getTimeInMillis();
+        final int diffMonthMax = getDiffMonths(minDateMillis, mMaxDate.getTimeInMillis());
+        final int diffMonth = getDiffMonths(minDateMillis, timeInMillis);
         return MathUtils.constrain(diffMonth, 0, diffMonthMax);
     }
 
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.picker.date;
+
+import com.tr4android.support.extension.picker.MathUtils;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * An immutable grid of the days within a month, together with the primitive date arithmetic
+ * used by the date picker. Months use the {@link Calendar} convention ({@link Calendar#JANUARY}
+ * is {@code 0}) and days of the week range from {@link Calendar#SUNDAY} to
+ * {@link Calendar#SATURDAY}, but no {@link Calendar} instances are ever created.
+ * <p>
+ * All dates are in the proleptic Gregorian calendar.
+ */
+final class MonthGrid {
+    static final int DAYS_IN_WEEK = 7;
+    static final int MONTHS_IN_YEAR = 12;
+
+    /** The day of the week of 1970-01-01 (epoch day 0). */
+    private static final int EPOCH_DAY_OF_WEEK = Calendar.THURSDAY;
+
+    private static final int DAYS_PER_CYCLE = 146097;
+    private static final long DAYS_0000_TO_1970 = (DAYS_PER_CYCLE * 5L) - (30L * 365L + 7L);
+    private static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+
+    private final int mYear;
+    private final int mMonth;
+    private final int mWeekStart;
+    private final int mDaysInMonth;
+    private final int mDayOfWeekStart;
+    private final int mEnabledDayStart;
+    private final int mEnabledDayEnd;
+
+    /**
+     * @param year the year
+     * @param month the month
+     * @param weekStart which day the week should start on, valid values are
+     *                  {@link Calendar#SUNDAY} through {@link Calendar#SATURDAY}
+     * @param enabledDayStart the first enabled day, constrained to the month
+     * @param enabledDayEnd the last enabled day, constrained to the month
+     */
+    MonthGrid(int year, int month, int weekStart, int enabledDayStart, int enabledDayEnd) {
+        mYear = year;
+        mMonth = month;
+        mWeekStart = weekStart;
+        mDaysInMonth = getDaysInMonth(month, year);
+        mDayOfWeekStart = getDayOfWeek(toEpochDay(year, month, 1));
+        mEnabledDayStart = MathUtils.constrain(enabledDayStart, 1, mDaysInMonth);
+        mEnabledDayEnd = MathUtils.constrain(enabledDayEnd, mEnabledDayStart, mDaysInMonth);
+    }
+
+    int getYear() {
+        return mYear;
+    }
+
+    int getMonth() {
+        return mMonth;
+    }
+
+    int getWeekStart() {
+        return mWeekStart;
+    }
+
+    int getDaysInMonth() {
+        return mDaysInMonth;
+    }
+
+    /**
+     * @return the day of week (ex. {@link Calendar#SUNDAY}) of the first day of the month
+     */
+    int getDayOfWeekStart() {
+        return mDayOfWeekStart;
+    }
+
+    int getEnabledDayStart() {
+        return mEnabledDayStart;
+    }
+
+    int getEnabledDayEnd() {
+        return mEnabledDayEnd;
+    }
+
+    /**
+     * @return the column of the first day of the month
+     */
+    int getDayOffset() {
+        return getDayOffset(mDayOfWeekStart, mWeekStart);
+    }
+
+    boolean isDayEnabled(int day) {
+        return day >= mEnabledDayStart && day <= mEnabledDayEnd;
+    }
+
+    boolean isValidDayOfMonth(int day) {
+        return day >= 1 && day <= mDaysInMonth;
+    }
+
+    /**
+     * Calculates the column of the first day of a month.
+     *
+     * @param dayOfWeekStart the day of week of the first day of the month
+     * @param weekStart the first day of the week
+     * @return the column of the first day, from {@code 0} to {@code 6}
+     */
+    static int getDayOffset(int dayOfWeekStart, int weekStart) {
+        final int offset = dayOfWeekStart - weekStart;
+        if (dayOfWeekStart < weekStart) {
+            return offset + DAYS_IN_WEEK;
+        }
+        return offset;
+    }
+
+    static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    static int getDaysInMonth(int month, int year) {
+        switch (month) {
+            case Calendar.JANUARY:
+            case Calendar.MARCH:
+            case Calendar.MAY:
+            case Calendar.JULY:
+            case Calendar.AUGUST:
+            case Calendar.OCTOBER:
+            case Calendar.DECEMBER:
+                return 31;
+            case Calendar.APRIL:
+            case Calendar.JUNE:
+            case Calendar.SEPTEMBER:
+            case Calendar.NOVEMBER:
+                return 30;
+            case Calendar.FEBRUARY:
+                return isLeapYear(year) ? 29 : 28;
+            default:
+                throw new IllegalArgumentException("Invalid Month");
+        }
+    }
+
+    /**
+     * Converts a date to the number of days since 1970-01-01.
+     *
+     * @param year the year
+     * @param month the month, from {@link Calendar#JANUARY} to {@link Calendar#DECEMBER}
+     * @param dayOfMonth the day of the month, starting at {@code 1}
+     * @return the epoch day
+     */
+    static long toEpochDay(int year, int month, int dayOfMonth) {
+        final long y = year;
+        final long m = month + 1;
+        long total = 365 * y;
+        if (y >= 0) {
+            total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        } else {
+            total -= y / -4 - y / -100 + y / -400;
+        }
+        total += ((367 * m - 362) / 12);
+        total += dayOfMonth - 1;
+        if (m > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * Converts a timestamp to the epoch day in a time zone. The zone is passed in by the caller
+     * because {@link TimeZone#getDefault()} returns a new copy on every call.
+     *
+     * @param timeInMillis the timestamp in milliseconds
+     * @param zone the time zone, usually the one of the calendar the timestamp is taken from
+     * @return the epoch day
+     */
+    static long toEpochDay(long timeInMillis, TimeZone zone) {
+        final long localMillis = timeInMillis + zone.getOffset(timeInMillis);
+        return floorDiv(localMillis, MILLIS_PER_DAY);
+    }
+
+    /**
+     * @param zone the time zone
+     * @return the epoch day of today in the time zone
+     */
+    static long getTodayEpochDay(TimeZone zone) {
+        return toEpochDay(System.currentTimeMillis(), zone);
+    }
+
+    /**
+     * @param epochDay the epoch day
+     * @return the day of week, from {@link Calendar#SUNDAY} to {@link Calendar#SATURDAY}
+     */
+    static int getDayOfWeek(long epochDay) {
+        return (int) floorMod(epochDay + EPOCH_DAY_OF_WEEK - Calendar.SUNDAY, DAYS_IN_WEEK)
+                + Calendar.SUNDAY;
+    }
+
+    /**
+     * Converts an epoch day to a continuous month index ({@code year * 12 + month}), which
+     * allows calculating the difference in months with a single subtraction.
+     *
+     * @param epochDay the epoch day
+     * @return the month index
+     */
+    static int getMonthIndex(long epochDay) {
+        // See java.time.LocalDate#ofEpochDay(long).
+        long zeroDay = epochDay + DAYS_0000_TO_1970;
+        zeroDay -= 60;
+        long adjust = 0;
+        if (zeroDay < 0) {
+            final long adjustCycles = (zeroDay + 1) / DAYS_PER_CYCLE - 1;
+            adjust = adjustCycles * 400;
+            zeroDay += -adjustCycles * DAYS_PER_CYCLE;
+        }
+        long yearEst = (400 * zeroDay + 591) / DAYS_PER_CYCLE;
+        long doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+        if (doyEst < 0) {
+            yearEst--;
+            doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+        }
+        yearEst += adjust;
+        final int marchDoy0 = (int) doyEst;
+
+        // Convert from a March based year to a January based one.
+        final int marchMonth0 = (marchDoy0 * 5 + 2) / 153;
+        final int month = (marchMonth0 + 2) % 12;
+        final int year = (int) (yearEst + marchMonth0 / 10);
+        return getMonthIndex(year, month);
+    }
+
+    /**
+     * @param year the year
+     * @param month the month, from {@link Calendar#JANUARY} to {@link Calendar#DECEMBER}
+     * @return the month index
+     */
+    static int getMonthIndex(int year, int month) {
+        return year * MONTHS_IN_YEAR + month;
+    }
+
+    static int getYearForMonthIndex(int monthIndex) {
+        return (int) floorDiv(monthIndex, MONTHS_IN_YEAR);
+    }
+
+    static int getMonthForMonthIndex(int monthIndex) {
+        return (int) floorMod(monthIndex, MONTHS_IN_YEAR);
+    }
+
+    /**
+     * @param epochDay the epoch day
+     * @return the day of the month, starting at {@code 1}
+     */
+    static int getDayOfMonth(long epochDay) {
+        final int monthIndex = getMonthIndex(epochDay);
+        return (int) (epochDay - toEpochDay(getYearForMonthIndex(monthIndex),
+                getMonthForMonthIndex(monthIndex), 1)) + 1;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long r = x / y;
+        if ((x ^ y) < 0 && (r * y != x)) {
+            r--;
+        }
+        return r;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+}
@@ -18,6 +18,7 @@ package com.tr4android.support.extension.picker.date;
 
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
@@ -39,13 +40,9 @@ import android.view.View;
 import android.view.accessibility.AccessibilityEvent;
 
 import com.tr4android.appcompat.extension.R;
-import com.tr4android.support.extension.picker.DateFormatUtils;
-import com.tr4android.support.extension.picker.MathUtils;
 import com.tr4android.support.extension.utils.ViewCompatUtils;
 import com.tr4android.support.extension.picker.PickerThemeUtils;
 
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Locale;
@@ -60,13 +57,21 @@ class SimpleMonthView extends View {
 
     private static final int DAYS_IN_WEEK = 7;
     private static final int MAX_WEEKS_IN_MONTH = 6;
+    private static final int MAX_DAYS_IN_MONTH = 31;
+
+    /** State sets for each combination of enabled flag and view state. */
+    private static final int[][] DAY_STATE_SETS = new int[][] {
+            buildState(false, 0),
+            buildState(false, VIEW_STATE_SELECTED),
+            buildState(false, VIEW_STATE_PRESSED),
+            buildState(true, 0),
+            buildState(true, VIEW_STATE_SELECTED),
+            buildState(true, VIEW_STATE_PRESSED)
+    };
 
     private static final int DEFAULT_SELECTED_DAY = -1;
     private static final int DEFAULT_WEEK_START = Calendar.SUNDAY;
 
-    private static final String DEFAULT_TITLE_FORMAT = "MMMMy";
-    private static final String DAY_OF_WEEK_FORMAT = "EEEEE";
-
     private final TextPaint mMonthPaint = new TextPaint();
     private final TextPaint mDayOfWeekPaint = new TextPaint();
     private final TextPaint mDayPaint = new TextPaint();
@@ -74,13 +79,23 @@ class SimpleMonthView extends View {
     private final Paint mDayHighlightPaint = new Paint();
 
     private final Calendar mCalendar = Calendar.getInstance();
-    private final Calendar mDayOfWeekLabelCalendar = Calendar.getInstance();
 
     private final MonthViewTouchHelper mTouchHelper;
 
-    private final SimpleDateFormat mTitleFormatter;
-    private final SimpleDateFormat mDayOfWeekFormatter;
-    private final NumberFormat mDayFormatter;
+    /** Localized labels, shared with all other month views. */
+    private DateLabelCache mLabels;
+
+    // Cell layout, computed when the month or the dimensions change so that
+    // drawing doesn't need to format or allocate anything.
+    private final String[] mDayOfWeekLabels = new String[DAYS_IN_WEEK];
+    private final int[] mDayOfWeekCenterX = new int[DAYS_IN_WEEK];
+    private final int[] mDayCenterX = new int[MAX_DAYS_IN_MONTH + 1];
+    private final int[] mDayCenterY = new int[MAX_DAYS_IN_MONTH + 1];
+    private final int[] mDayTextColors = new int[DAY_STATE_SETS.length];
+    private float mMonthTextX;
+    private float mMonthTextY;
+    private float mDayOfWeekTextY;
+    private float mDayTextOffsetY;
 
     // Desired dimensions.
     private final int mDesiredMonthHeight;
@@ -162,13 +177,10 @@ class SimpleMonthView extends View {
         ViewCompat.setAccessibilityDelegate(this, mTouchHelper);
         ViewCompat.setImportantForAccessibility(this, ViewCompat.IMPORTANT_FOR_ACCESSIBILITY_YES);
 
-        final Locale locale = res.getConfiguration().locale;
-        final String titleFormat = DateFormatUtils.getBestDateTimePattern(locale, DEFAULT_TITLE_FORMAT);
-        mTitleFormatter = new SimpleDateFormat(titleFormat, locale);
-        mDayOfWeekFormatter = new SimpleDateFormat(DAY_OF_WEEK_FORMAT, locale);
-        mDayFormatter = NumberFormat.getIntegerInstance(locale);
+        mLabels = DateLabelCache.getInstance(res.getConfiguration().locale);
 
         initPaints(res);
+        updateDayOfWeekLabels();
     }
 
     /**
@@ -212,11 +224,13 @@ class SimpleMonthView extends View {
 
     public void setMonthTextAppearance(int resId) {
         applyTextAppearance(mMonthPaint, resId);
+        updateCellLayout();
         invalidate();
     }
 
     public void setDayOfWeekTextAppearance(int resId) {
         applyTextAppearance(mDayOfWeekPaint, resId);
+        updateCellLayout();
         invalidate();
     }
 
@@ -229,12 +243,14 @@ class SimpleMonthView extends View {
             mDayPaint.setColor(mDayTextColor.getColorForState(ENABLED_STATE_SET, 0));
         }
 
+        updateDayTextColors();
+        updateCellLayout();
         invalidate();
     }
 
     public CharSequence getTitle() {
         if (mTitle == null) {
-            mTitle = DateFormatUtils.format(mTitleFormatter, mCalendar);
+            mTitle = mLabels.getMonthTitle(mMonth, mYear);
         }
         return mTitle;
     }
@@ -293,9 +309,24 @@ class SimpleMonthView extends View {
 
     void setDayTextColor(ColorStateList dayTextColor) {
         mDayTextColor = dayTextColor;
+        updateDayTextColors();
         invalidate();
     }
 
+    /**
+     * Resolves the day text color for every combination of enabled flag and
+     * view state, so that drawing doesn't need to build state sets.
+     */
+    private void updateDayTextColors() {
+        if (mDayTextColor == null) {
+            return;
+        }
+
+        for (int i = 0; i < DAY_STATE_SETS.length; i++) {
+            mDayTextColors[i] = mDayTextColor.getColorForState(DAY_STATE_SETS[i], 0);
+        }
+    }
+
     void setDaySelectorColor(ColorStateList dayBackgroundColor) {
         final int selectedColor = dayBackgroundColor.getColorForState(
                 new int[]{android.R.attr.state_enabled, android.R.attr.state_selected}, 0);
@@ -367,66 +398,25 @@ class SimpleMonthView extends View {
     }
 
     private void drawMonth(Canvas canvas) {
-        final float x = mPaddedWidth / 2f;
-
-        // Vertically centered within the month header height.
-        final float lineHeight = mMonthPaint.ascent() + mMonthPaint.descent();
-        final float y = (mMonthHeight - lineHeight) / 2f;
-
-        canvas.drawText(getTitle().toString(), x, y, mMonthPaint);
+        canvas.drawText(getTitle().toString(), mMonthTextX, mMonthTextY, mMonthPaint);
     }
 
     private void drawDaysOfWeek(Canvas canvas) {
-        final TextPaint p = mDayOfWeekPaint;
-        final int headerHeight = mMonthHeight;
-        final int rowHeight = mDayOfWeekHeight;
-        final int colWidth = mCellWidth;
-
-        // Text is vertically centered within the day of week height.
-        final float halfLineHeight = (p.ascent() + p.descent()) / 2f;
-        final int rowCenter = headerHeight + rowHeight / 2;
-
         for (int col = 0; col < DAYS_IN_WEEK; col++) {
-            final int colCenter = colWidth * col + colWidth / 2;
-            final int colCenterRtl;
-            if (ViewCompatUtils.isLayoutRtl(this)) {
-                colCenterRtl = mPaddedWidth - colCenter;
-            } else {
-                colCenterRtl = colCenter;
-            }
-
-            final int dayOfWeek = (col + mWeekStart) % DAYS_IN_WEEK;
-            final String label = getDayOfWeekLabel(dayOfWeek);
-            canvas.drawText(label, colCenterRtl, rowCenter - halfLineHeight, p);
+            canvas.drawText(mDayOfWeekLabels[col], mDayOfWeekCenterX[col], mDayOfWeekTextY,
+                    mDayOfWeekPaint);
         }
     }
 
-    private String getDayOfWeekLabel(int dayOfWeek) {
-        mDayOfWeekLabelCalendar.set(Calendar.DAY_OF_WEEK, dayOfWeek);
-        return DateFormatUtils.formatDayOfWeek(mDayOfWeekFormatter, mDayOfWeekLabelCalendar);
-    }
-
     /**
      * Draws the month days.
      */
     private void drawDays(Canvas canvas) {
         final TextPaint p = mDayPaint;
-        final int headerHeight = mMonthHeight + mDayOfWeekHeight;
-        final int rowHeight = mDayHeight;
-        final int colWidth = mCellWidth;
 
-        // Text is vertically centered within the row height.
-        final float halfLineHeight = (p.ascent() + p.descent()) / 2f;
-        int rowCenter = headerHeight + rowHeight / 2;
-
-        for (int day = 1, col = findDayOffset(); day <= mDaysInMonth; day++) {
-            final int colCenter = colWidth * col + colWidth / 2;
-            final int colCenterRtl;
-            if (ViewCompatUtils.isLayoutRtl(this)) {
-                colCenterRtl = mPaddedWidth - colCenter;
-            } else {
-                colCenterRtl = colCenter;
-            }
+        for (int day = 1; day <= mDaysInMonth; day++) {
+            final int centerX = mDayCenterX[day];
+            final int centerY = mDayCenterY[day];
 
             int state = 0;
 
@@ -436,14 +426,13 @@ class SimpleMonthView extends View {
                 state = VIEW_STATE_SELECTED;
 
                 // Adjust the circle to be centered on the row.
-                canvas.drawCircle(colCenterRtl, rowCenter, mDaySelectorRadius, mDaySelectorPaint);
+                canvas.drawCircle(centerX, centerY, mDaySelectorRadius, mDaySelectorPaint);
             } else if (mTouchedItem == day) {
                 state = VIEW_STATE_PRESSED;
 
                 if (isDayEnabled) {
                     // Adjust the circle to be centered on the row.
-                    canvas.drawCircle(colCenterRtl, rowCenter,
-                            mDaySelectorRadius, mDayHighlightPaint);
+                    canvas.drawCircle(centerX, centerY, mDaySelectorRadius, mDayHighlightPaint);
                 }
             }
 
@@ -452,12 +441,57 @@ class SimpleMonthView extends View {
             if (isDayToday && !isDayActivated) {
                 dayTextColor = mDaySelectorPaint.getColor();
             } else {
-                final int[] stateSet = buildState(isDayEnabled, state);
-                dayTextColor = mDayTextColor.getColorForState(stateSet, 0);
+                dayTextColor = mDayTextColors[(isDayEnabled ? 3 : 0) + state];
             }
             p.setColor(dayTextColor);
 
-            canvas.drawText(mDayFormatter.format(day), colCenterRtl, rowCenter - halfLineHeight, p);
+            canvas.drawText(mLabels.getDayLabel(day), centerX, centerY + mDayTextOffsetY, p);
+        }
+    }
+
+    /**
+     * Updates the day of week labels to match the current first day of the
+     * week.
+     */
+    private void updateDayOfWeekLabels() {
+        for (int col = 0; col < DAYS_IN_WEEK; col++) {
+            final int dayOfWeek = (col + mWeekStart) % DAYS_IN_WEEK;
+            mDayOfWeekLabels[col] = mLabels.getDayOfWeekLabel(dayOfWeek);
+        }
+    }
+
+    /**
+     * Computes the text positions and the cell centers of all days in the
+     * current month. Needs to be called whenever the month, the first day of
+     * the week, the dimensions or the layout direction change.
+     */
+    private void updateCellLayout() {
+        final boolean isLayoutRtl = ViewCompatUtils.isLayoutRtl(this);
+        final int colWidth = mCellWidth;
+
+        // Vertically centered within the month header height.
+        final float monthLineHeight = mMonthPaint.ascent() + mMonthPaint.descent();
+        mMonthTextX = mPaddedWidth / 2f;
+        mMonthTextY = (mMonthHeight - monthLineHeight) / 2f;
+
+        // Text is vertically centered within the day of week height.
+        final float dayOfWeekHalfLineHeight =
+                (mDayOfWeekPaint.ascent() + mDayOfWeekPaint.descent()) / 2f;
+        mDayOfWeekTextY = mMonthHeight + mDayOfWeekHeight / 2 - dayOfWeekHalfLineHeight;
+
+        for (int col = 0; col < DAYS_IN_WEEK; col++) {
+            final int colCenter = colWidth * col + colWidth / 2;
+            mDayOfWeekCenterX[col] = isLayoutRtl ? mPaddedWidth - colCenter : colCenter;
+        }
+
+        // Text is vertically centered within the row height.
+        mDayTextOffsetY = -(mDayPaint.ascent() + mDayPaint.descent()) / 2f;
+
+        final int rowHeight = mDayHeight;
+        int rowCenter = mMonthHeight + mDayOfWeekHeight + rowHeight / 2;
+        for (int day = 1, col = findDayOffset(); day <= mDaysInMonth; day++) {
+            mDayCenterX[day] = mDayOfWeekCenterX[col];
+            mDayCenterY[day] = rowCenter;
 
             col++;
 
@@ -511,6 +545,9 @@ class SimpleMonthView extends View {
             mWeekStart = mCalendar.getFirstDayOfWeek();
         }
 
+        updateDayOfWeekLabels();
+        updateCellLayout();
+
         // Invalidate cached accessibility information.
         mTouchHelper.invalidateRoot();
         invalidate();
@@ -535,71 +572,45 @@ class SimpleMonthView extends View {
     void setMonthParams(int selectedDay, int month, int year, int weekStart, int enabledDayStart,
                         int enabledDayEnd) {
         mActivatedDay = selectedDay;
+        // A recycled page must not keep the touch highlight of its previous month
+        mTouchedItem = -1;
 
         if (isValidMonth(month)) {
             mMonth = month;
         }
         mYear = year;
 
-        mCalendar.set(Calendar.MONTH, mMonth);
-        mCalendar.set(Calendar.YEAR, mYear);
-        mCalendar.set(Calendar.DAY_OF_MONTH, 1);
-        mDayOfWeekStart = mCalendar.get(Calendar.DAY_OF_WEEK);
-
         if (isValidDayOfWeek(weekStart)) {
             mWeekStart = weekStart;
         } else {
             mWeekStart = mCalendar.getFirstDayOfWeek();
         }
 
+        final MonthGrid grid = new MonthGrid(mYear, mMonth, mWeekStart,
+                enabledDayStart, enabledDayEnd);
+        mDayOfWeekStart = grid.getDayOfWeekStart();
+        mDaysInMonth = grid.getDaysInMonth();
+        mEnabledDayStart = grid.getEnabledDayStart();
+        mEnabledDayEnd = grid.getEnabledDayEnd();
+
         // Figure out what day today is.
-        final Calendar today = Calendar.getInstance();
-        mToday = -1;
-        mDaysInMonth = getDaysInMonth(mMonth, mYear);
-        for (int i = 0; i < mDaysInMonth; i++) {
-            final int day = i + 1;
-            if (sameDay(day, today)) {
-                mToday = day;
-            }
+        final long today = MonthGrid.getTodayEpochDay(mCalendar.getTimeZone());
+        if (MonthGrid.getMonthIndex(today) == MonthGrid.getMonthIndex(mYear, mMonth)) {
+            mToday = MonthGrid.getDayOfMonth(today);
+        } else {
+            mToday = -1;
         }
 
-        mEnabledDayStart = MathUtils.constrain(enabledDayStart, 1, mDaysInMonth);
-        mEnabledDayEnd = MathUtils.constrain(enabledDayEnd, mEnabledDayStart, mDaysInMonth);
-
         // Invalidate the old title.
         mTitle = null;
 
+        updateDayOfWeekLabels();
+        updateCellLayout();
+
         // Invalidate cached accessibility information.
         mTouchHelper.invalidateRoot();
     }
 
-    private static int getDaysInMonth(int month, int year) {
-        switch (month) {
-            case Calendar.JANUARY:
-            case Calendar.MARCH:
-            case Calendar.MAY:
-            case Calendar.JULY:
-            case Calendar.AUGUST:
-            case Calendar.OCTOBER:
-            case Calendar.DECEMBER:
-                return 31;
-            case Calendar.APRIL:
-            case Calendar.JUNE:
-            case Calendar.SEPTEMBER:
-            case Calendar.NOVEMBER:
-                return 30;
-            case Calendar.FEBRUARY:
-                return (year % 4 == 0) ? 29 : 28;
-            default:
-                throw new IllegalArgumentException("Invalid Month");
-        }
-    }
-
-    private boolean sameDay(int day, Calendar today) {
-        return mYear == today.get(Calendar.YEAR) && mMonth == today.get(Calendar.MONTH)
-                && day == today.get(Calendar.DAY_OF_MONTH);
-    }
-
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         final int preferredHeight = mDesiredDayHeight * MAX_WEEKS_IN_MONTH
@@ -612,10 +623,25 @@ class SimpleMonthView extends View {
         setMeasuredDimension(resolvedWidth, resolvedHeight);
     }
 
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+
+        final Locale locale = newConfig.locale;
+        if (locale != null && !locale.equals(mLabels.getLocale())) {
+            mLabels = DateLabelCache.getInstance(locale);
+            mTitle = null;
+            updateDayOfWeekLabels();
+            mTouchHelper.invalidateRoot();
+            invalidate();
+        }
+    }
+
     @Override
     public void onRtlPropertiesChanged(int layoutDirection) {
         super.onRtlPropertiesChanged(layoutDirection);
 
+        updateCellLayout();
         requestLayout();
     }
 
@@ -661,6 +687,8 @@ class SimpleMonthView extends View {
         mDaySelectorRadius = Math.min(mDesiredDaySelectorRadius,
                 Math.min(maxSelectorWidth, maxSelectorHeight));
 
+        updateCellLayout();
+
         // Invalidate cached accessibility information.
         mTouchHelper.invalidateRoot();
     }
@@ -679,11 +707,7 @@ class SimpleMonthView extends View {
     }
 
     private int findDayOffset() {
-        final int offset = mDayOfWeekStart - mWeekStart;
-        if (mDayOfWeekStart < mWeekStart) {
-            return offset + DAYS_IN_WEEK;
-        }
-        return offset;
+        return MonthGrid.getDayOffset(mDayOfWeekStart, mWeekStart);
     }
 
     /**
@@ -882,7 +906,7 @@ class SimpleMonthView extends View {
          */
         private CharSequence getDayText(int id) {
             if (isValidDayOfMonth(id)) {
-                return mDayFormatter.format(id);
+                return mLabels.getDayLabel(id);
             }
 
             return null;
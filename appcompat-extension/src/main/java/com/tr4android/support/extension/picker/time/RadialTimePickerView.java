@@ -27,12 +27,17 @@ import android.content.Context;
 import android.content.res.ColorStateList;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.RadialGradient;
 import android.graphics.Rect;
 import android.graphics.Region;
+import android.graphics.Shader;
 import android.graphics.Typeface;
 import android.os.Build;
 import android.os.Bundle;
@@ -75,6 +80,10 @@ public class RadialTimePickerView extends View {
     private static final int SELECTOR_DOT = 1;
     private static final int SELECTOR_LINE = 2;
 
+    // Modes for drawing the activated minutes within the selector.
+    private static final int SELECTOR_MODE_CLIP = 0;
+    private static final int SELECTOR_MODE_SHADER = 1;
+
     private static final int AM = 0;
     private static final int PM = 1;
 
@@ -102,6 +111,15 @@ public class RadialTimePickerView extends View {
     private static final float[] COS_30 = new float[NUM_POSITIONS];
     private static final float[] SIN_30 = new float[NUM_POSITIONS];
 
+    // Sine and cosine for each integer degree, so that drawing and touch
+    // handling don't need any trigonometric calls.
+    private static final float[] COS_DEGREES = new float[360];
+    private static final float[] SIN_DEGREES = new float[360];
+
+    // Tangent of each half degree boundary between 0 and 45 degrees, used to
+    // map a touch vector to the nearest integer degree.
+    private static final float[] TAN_HALF_DEGREES = new float[45];
+
     static {
         // Prepare mapping to snap touchable degrees to selectable degrees.
         preparePrefer30sMap();
@@ -113,6 +131,16 @@ public class RadialTimePickerView extends View {
             SIN_30[i] = (float) Math.sin(angle);
             angle += increment;
         }
+
+        for (int degrees = 0; degrees < 360; degrees++) {
+            final double radians = Math.toRadians(degrees);
+            COS_DEGREES[degrees] = (float) Math.cos(radians);
+            SIN_DEGREES[degrees] = (float) Math.sin(radians);
+        }
+
+        for (int degrees = 0; degrees < TAN_HALF_DEGREES.length; degrees++) {
+            TAN_HALF_DEGREES[degrees] = (float) Math.tan(Math.toRadians(degrees + 0.5));
+        }
     }
 
     private final boolean mIsHoneycombOrAbove = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB);
@@ -125,7 +153,7 @@ public class RadialTimePickerView extends View {
     private final String[] mInnerHours24Texts = new String[12];
     private final String[] mMinutesTexts = new String[12];
 
-    private final Paint[] mPaint = new Paint[2];
+    private final Paint[] mPaint = new Paint[3];
     private final IntHolder[] mAlpha = new IntHolder[2];
 
     private final Paint mPaintCenter = new Paint();
@@ -140,6 +168,8 @@ public class RadialTimePickerView extends View {
     private final Typeface mTypeface;
 
     private final ColorStateList[] mTextColor = new ColorStateList[3];
+    private final int[] mTextColorNormal = new int[3];
+    private final int[] mTextColorActivated = new int[3];
     private final int[] mTextSize = new int[3];
     private final int[] mTextInset = new int[3];
 
@@ -158,6 +188,26 @@ public class RadialTimePickerView extends View {
 
     private final Path mSelectorPath = new Path();
 
+    private final int mSelectorMode;
+    private final Paint mPaintActivatedMinutes = new Paint();
+    private final Matrix mActivatedMinutesMatrix = new Matrix();
+
+    /**
+     * All minutes in their activated color, used as a shader for
+     * {@link #SELECTOR_MODE_SHADER}. The bitmap covers the circle and is only
+     * rendered again after a layout, moving the selector just moves the
+     * circle that is filled from it.
+     */
+    private Bitmap mActivatedMinutesBitmap;
+    private boolean mActivatedMinutesInvalid = true;
+
+    /** Leaves the normal minutes out of the selector for {@link #SELECTOR_MODE_SHADER}. */
+    private Shader mNormalMinutesMask;
+    private final Matrix mNormalMinutesMaskMatrix = new Matrix();
+
+    private float mSelectorCenterX;
+    private float mSelectorCenterY;
+
     private boolean mIs24HourMode;
     private boolean mShowHours;
 
@@ -346,9 +396,20 @@ public class RadialTimePickerView extends View {
         mPaint[MINUTES].setAntiAlias(true);
         mPaint[MINUTES].setTextAlign(Paint.Align.CENTER);
 
+        mPaint[HOURS_INNER] = new Paint();
+        mPaint[HOURS_INNER].setAntiAlias(true);
+        mPaint[HOURS_INNER].setTextAlign(Paint.Align.CENTER);
+
+        final int[] enabledStateSet = new int[]{android.R.attr.state_enabled};
         final int[] selectedStateSet = new int[]{
                 android.R.attr.state_enabled, android.R.attr.state_selected};
 
+        // Resolve the text colors once, so drawing doesn't need to build state sets.
+        for (int i = 0; i < mTextColor.length; i++) {
+            mTextColorNormal[i] = mTextColor[i].getColorForState(enabledStateSet, 0);
+            mTextColorActivated[i] = mTextColor[i].getColorForState(selectedStateSet, 0);
+        }
+
         // Set up number selected color, if available.
         final ColorStateList numbersSelectorColor;
         if (a.hasValue(R.styleable.TimePickerDialog_numbersSelectorColor)) {
@@ -388,6 +449,10 @@ public class RadialTimePickerView extends View {
         mPaintSelector[MINUTES][SELECTOR_LINE].setAntiAlias(true);
         mPaintSelector[MINUTES][SELECTOR_LINE].setStrokeWidth(2);
 
+        mSelectorMode = a.getInt(R.styleable.TimePickerDialog_numbersSelectorMode,
+                SELECTOR_MODE_CLIP);
+        mPaintActivatedMinutes.setAntiAlias(true);
+
         mPaintBackground.setColor(a.getColor(R.styleable.TimePickerDialog_numbersBackgroundColor,
                 ContextCompat.getColor(context, android.R.color.transparent)));
         mPaintBackground.setAntiAlias(true);
@@ -405,6 +470,11 @@ public class RadialTimePickerView extends View {
         mTextInset[MINUTES] = res.getDimensionPixelSize(R.dimen.timepicker_text_inset_normal);
         mTextInset[HOURS_INNER] = res.getDimensionPixelSize(R.dimen.timepicker_text_inset_inner);
 
+        for (int i = 0; i < mPaint.length; i++) {
+            mPaint[i].setTextSize(mTextSize[i]);
+            mPaint[i].setTypeface(mTypeface);
+        }
+
         mShowHours = true;
         mIs24HourMode = false;
         mAmOrPm = AM;
@@ -678,10 +748,20 @@ public class RadialTimePickerView extends View {
 
         calculatePositionsHours();
         calculatePositionsMinutes();
+        mActivatedMinutesInvalid = true;
 
         mTouchHelper.invalidateRoot();
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        // Allocated again on the next draw.
+        releaseActivatedMinutesShader();
+        mActivatedMinutesInvalid = true;
+    }
+
     @Override
     public void onDraw(Canvas canvas) {
         final float alphaMod = mInputEnabled ? 1 : mDisabledAlpha;
@@ -703,15 +783,15 @@ public class RadialTimePickerView extends View {
             drawSelector(canvas, mIsOnInnerCircle ? HOURS_INNER : HOURS, null, alphaMod);
 
             // Draw outer hours.
-            drawTextElements(canvas, mTextSize[HOURS], mTypeface, mTextColor[HOURS],
-                    mOuterTextHours, mOuterTextX[HOURS], mOuterTextY[HOURS], mPaint[HOURS],
-                    hoursAlpha, !mIsOnInnerCircle, mSelectionDegrees[HOURS], false);
+            drawTextElements(canvas, HOURS, mOuterTextHours, mOuterTextX[HOURS],
+                    mOuterTextY[HOURS], mPaint[HOURS], hoursAlpha, !mIsOnInnerCircle,
+                    mSelectionDegrees[HOURS], false);
 
             // Draw inner hours (13-00) for 24-hour time.
             if (mIs24HourMode && mInnerTextHours != null) {
-                drawTextElements(canvas, mTextSize[HOURS_INNER], mTypeface, mTextColor[HOURS_INNER],
-                        mInnerTextHours, mInnerTextX, mInnerTextY, mPaint[HOURS], hoursAlpha,
-                        mIsOnInnerCircle, mSelectionDegrees[HOURS], false);
+                drawTextElements(canvas, HOURS_INNER, mInnerTextHours, mInnerTextX, mInnerTextY,
+                        mPaint[HOURS_INNER], hoursAlpha, mIsOnInnerCircle,
+                        mSelectionDegrees[HOURS], false);
             }
         }
     }
@@ -719,6 +799,11 @@ public class RadialTimePickerView extends View {
     private void drawMinutes(Canvas canvas, float alphaMod) {
         final int minutesAlpha = (int) (mAlpha[MINUTES].getValue() * alphaMod + 0.5f);
         if (minutesAlpha > 0) {
+            if (mSelectorMode == SELECTOR_MODE_SHADER) {
+                drawMinutesWithShader(canvas, alphaMod, minutesAlpha);
+                return;
+            }
+
             // Draw the minute selector under the elements.
             drawSelector(canvas, MINUTES, mSelectorPath, alphaMod);
 
@@ -726,22 +811,119 @@ public class RadialTimePickerView extends View {
             // activated states.
             canvas.save(Canvas.CLIP_SAVE_FLAG);
             canvas.clipPath(mSelectorPath, Region.Op.DIFFERENCE);
-            drawTextElements(canvas, mTextSize[MINUTES], mTypeface, mTextColor[MINUTES],
-                    mMinutesText, mOuterTextX[MINUTES], mOuterTextY[MINUTES], mPaint[MINUTES],
-                    minutesAlpha, false, 0, false);
+            drawTextElements(canvas, MINUTES, mMinutesText, mOuterTextX[MINUTES],
+                    mOuterTextY[MINUTES], mPaint[MINUTES], minutesAlpha, false, 0, false);
             canvas.restore();
 
             // Intersect the selector region, then draw minutes with only
             // activated states.
             canvas.save(Canvas.CLIP_SAVE_FLAG);
             canvas.clipPath(mSelectorPath, Region.Op.INTERSECT);
-            drawTextElements(canvas, mTextSize[MINUTES], mTypeface, mTextColor[MINUTES],
-                    mMinutesText, mOuterTextX[MINUTES], mOuterTextY[MINUTES], mPaint[MINUTES],
-                    minutesAlpha, true, mSelectionDegrees[MINUTES], true);
+            drawTextElements(canvas, MINUTES, mMinutesText, mOuterTextX[MINUTES],
+                    mOuterTextY[MINUTES], mPaint[MINUTES], minutesAlpha, true,
+                    mSelectionDegrees[MINUTES], true);
             canvas.restore();
         }
     }
 
+    /**
+     * Draws the minutes in a single pass without clipping. The normal minutes
+     * are masked out inside the selector by a radial gradient, then the
+     * selector is covered with a circle that is filled from the cached
+     * activated minutes. This avoids clipping the minutes twice to the
+     * selector path.
+     */
+    private void drawMinutesWithShader(Canvas canvas, float alphaMod, int minutesAlpha) {
+        // Draw the minute selector under the elements.
+        drawSelector(canvas, MINUTES, null, alphaMod);
+
+        if (mActivatedMinutesInvalid) {
+            updateActivatedMinutesShader();
+        }
+
+        if (mActivatedMinutesBitmap == null) {
+            // Without a selector there is nothing to exclude.
+            drawTextElements(canvas, MINUTES, mMinutesText, mOuterTextX[MINUTES],
+                    mOuterTextY[MINUTES], mPaint[MINUTES], minutesAlpha, false, 0, false);
+            return;
+        }
+
+        // Draw the minutes with no activated states, leaving out the selector.
+        final Paint paint = mPaint[MINUTES];
+        mNormalMinutesMaskMatrix.setTranslate(mSelectorCenterX, mSelectorCenterY);
+        mNormalMinutesMask.setLocalMatrix(mNormalMinutesMaskMatrix);
+        paint.setShader(mNormalMinutesMask);
+        drawTextElements(canvas, MINUTES, mMinutesText, mOuterTextX[MINUTES],
+                mOuterTextY[MINUTES], paint, minutesAlpha, false, 0, false);
+        paint.setShader(null);
+
+        // Draw the activated minutes over the selector.
+        mPaintActivatedMinutes.setAlpha(minutesAlpha);
+        canvas.drawCircle(mSelectorCenterX, mSelectorCenterY, mSelectorRadius,
+                mPaintActivatedMinutes);
+    }
+
+    /**
+     * Renders all minutes in their activated color into a bitmap covering the
+     * circle, which is positioned over the circle once by the local matrix of
+     * its shader, and creates the mask that leaves the normal minutes out of
+     * the selector.
+     */
+    private void updateActivatedMinutesShader() {
+        mActivatedMinutesInvalid = false;
+        releaseActivatedMinutesShader();
+
+        final int size = mCircleRadius * 2;
+        if (size <= 0 || mSelectorRadius <= 0) {
+            return;
+        }
+
+        final int left = mXCenter - mCircleRadius;
+        final int top = mYCenter - mCircleRadius;
+        mActivatedMinutesBitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(mActivatedMinutesBitmap);
+        canvas.translate(-left, -top);
+        renderActivatedMinutes(canvas);
+
+        final Shader shader = new BitmapShader(mActivatedMinutesBitmap,
+                Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        mActivatedMinutesMatrix.setTranslate(left, top);
+        shader.setLocalMatrix(mActivatedMinutesMatrix);
+        mPaintActivatedMinutes.setShader(shader);
+
+        // The text color and alpha are taken from the paint, so the mask only
+        // switches between transparent and opaque at the selector edge.
+        final int opaque = mTextColorNormal[MINUTES] | 0xFF000000;
+        final int transparent = opaque & 0x00FFFFFF;
+        mNormalMinutesMask = new RadialGradient(0, 0, mSelectorRadius * 2,
+                new int[] { transparent, transparent, opaque, opaque },
+                new float[] { 0, 0.5f, 0.5f, 1 }, Shader.TileMode.CLAMP);
+    }
+
+    /**
+     * Draws all minutes with their activated color, regardless of the
+     * selection.
+     */
+    private void renderActivatedMinutes(Canvas canvas) {
+        final Paint paint = mPaint[MINUTES];
+        final int color = mTextColorActivated[MINUTES];
+        paint.setColor(color);
+        paint.setAlpha(getMultipliedAlpha(color, 255));
+        for (int i = 0; i < NUM_POSITIONS; i++) {
+            canvas.drawText(mMinutesText[i], mOuterTextX[MINUTES][i], mOuterTextY[MINUTES][i],
+                    paint);
+        }
+    }
+
+    private void releaseActivatedMinutesShader() {
+        if (mActivatedMinutesBitmap != null) {
+            mActivatedMinutesBitmap.recycle();
+            mActivatedMinutesBitmap = null;
+        }
+        mPaintActivatedMinutes.setShader(null);
+        mNormalMinutesMask = null;
+    }
+
     private void drawCenter(Canvas canvas, float alphaMod) {
         mPaintCenter.setAlpha((int) (255 * alphaMod + 0.5f));
         canvas.drawCircle(mXCenter, mYCenter, mCenterDotRadius, mPaintCenter);
@@ -764,14 +946,18 @@ public class RadialTimePickerView extends View {
         // Calculate the current radius at which to place the selection circle.
         final int selRadius = mSelectorRadius;
         final int selLength = mCircleRadius - mTextInset[index];
-        final double selAngleRad = Math.toRadians(mSelectionDegrees[index % 2]);
-        final float selCenterX = mXCenter + selLength * (float) Math.sin(selAngleRad);
-        final float selCenterY = mYCenter - selLength * (float) Math.cos(selAngleRad);
+        final int selDegrees = mSelectionDegrees[index % 2] % 360;
+        final float sin = SIN_DEGREES[selDegrees];
+        final float cos = COS_DEGREES[selDegrees];
+        final float selCenterX = mXCenter + selLength * sin;
+        final float selCenterY = mYCenter - selLength * cos;
 
         // Draw the selection circle.
         final Paint paint = mPaintSelector[index % 2][SELECTOR_CIRCLE];
         paint.setColor(color);
         canvas.drawCircle(selCenterX, selCenterY, selRadius, paint);
+        mSelectorCenterX = selCenterX;
+        mSelectorCenterY = selCenterY;
 
         // If needed, set up the clip path for later.
         if (selectorPath != null) {
@@ -789,8 +975,6 @@ public class RadialTimePickerView extends View {
 
         // Shorten the line to only go from the edge of the center dot to the
         // edge of the selection circle.
-        final double sin = Math.sin(selAngleRad);
-        final double cos = Math.cos(selAngleRad);
         final int lineLength = selLength - selRadius;
         final int centerX = mXCenter + (int) (mCenterDotRadius * sin);
         final int centerY = mYCenter - (int) (mCenterDotRadius * cos);
@@ -815,7 +999,7 @@ public class RadialTimePickerView extends View {
         // If we have an inner circle, calculate those positions too.
         if (mIs24HourMode) {
             final int innerNumbersRadius = mCircleRadius - mTextInset[HOURS_INNER];
-            calculatePositions(mPaint[HOURS], innerNumbersRadius, mXCenter, mYCenter,
+            calculatePositions(mPaint[HOURS_INNER], innerNumbersRadius, mXCenter, mYCenter,
                     mTextSize[HOURS_INNER], mInnerTextX, mInnerTextY);
         }
     }
@@ -847,14 +1031,12 @@ public class RadialTimePickerView extends View {
     }
 
     /**
-     * Draw the 12 text values at the positions specified by the textGrid parameters.
+     * Draw the 12 text values at the positions specified by the textGrid parameters. The paint
+     * must already be set up with the text size and typeface of the specified index.
      */
-    private void drawTextElements(Canvas canvas, float textSize, Typeface typeface,
-                                  ColorStateList textColor, String[] texts, float[] textX, float[] textY, Paint paint,
-                                  int alpha, boolean showActivated, int activatedDegrees, boolean activatedOnly) {
-        paint.setTextSize(textSize);
-        paint.setTypeface(typeface);
-
+    private void drawTextElements(Canvas canvas, int index, String[] texts, float[] textX,
+                                  float[] textY, Paint paint, int alpha, boolean showActivated,
+                                  int activatedDegrees, boolean activatedOnly) {
         // The activated index can touch a range of elements.
         final float activatedIndex = activatedDegrees / (360.0f / NUM_POSITIONS);
         final int activatedFloor = (int) activatedIndex;
@@ -866,9 +1048,8 @@ public class RadialTimePickerView extends View {
                 continue;
             }
 
-            final int[] stateMask = new int[] {android.R.attr.state_enabled,
-                    (showActivated && activated ? android.R.attr.state_selected : 0)};
-            final int color = textColor.getColorForState(stateMask, 0);
+            final int color = showActivated && activated
+                    ? mTextColorActivated[index] : mTextColorNormal[index];
             paint.setColor(color);
             paint.setAlpha(getMultipliedAlpha(color, alpha));
 
@@ -974,28 +1155,77 @@ public class RadialTimePickerView extends View {
             outerBound = center + mSelectorRadius;
         }
 
-        final double dX = x - mXCenter;
-        final double dY = y - mYCenter;
-        final double distFromCenter = Math.sqrt(dX * dX + dY * dY);
-        if (distFromCenter < innerBound || constrainOutside && distFromCenter > outerBound) {
+        // Compare squared distances to avoid the square root.
+        final float dX = x - mXCenter;
+        final float dY = y - mYCenter;
+        final float distFromCenterSq = dX * dX + dY * dY;
+        if (distFromCenterSq < (float) innerBound * innerBound
+                || constrainOutside && distFromCenterSq > (float) outerBound * outerBound) {
             return -1;
         }
 
-        // Convert to degrees.
-        final int degrees = (int) (Math.toDegrees(Math.atan2(dY, dX) + Math.PI / 2) + 0.5);
-        if (degrees < 0) {
-            return degrees + 360;
+        return getDegreesForVector(dX, dY);
+    }
+
+    /**
+     * Returns the angle of a vector from the center in integer degrees, where
+     * 0 degrees points up and the angle increases clockwise. Uses the tangent
+     * table instead of {@link Math#atan2(double, double)}.
+     *
+     * @param dX the horizontal distance from the center
+     * @param dY the vertical distance from the center
+     * @return the nearest integer degrees between 0 and 359 (inclusive)
+     */
+    private static int getDegreesForVector(float dX, float dY) {
+        final float absX = Math.abs(dX);
+        final float absY = Math.abs(dY);
+
+        // Angle between the vector and the x-axis within the quadrant.
+        final int quadrantDegrees;
+        if (absX == 0 && absY == 0) {
+            quadrantDegrees = 0;
+        } else if (absY <= absX) {
+            quadrantDegrees = getOctantDegrees(absY, absX);
+        } else {
+            quadrantDegrees = 90 - getOctantDegrees(absX, absY);
+        }
+
+        // Angle measured clockwise from the positive x-axis (y points down).
+        final int degrees;
+        if (dX >= 0) {
+            degrees = dY >= 0 ? quadrantDegrees : 360 - quadrantDegrees;
         } else {
-            return degrees;
+            degrees = dY >= 0 ? 180 - quadrantDegrees : 180 + quadrantDegrees;
         }
+
+        // Rotate so that 0 degrees points up.
+        return (degrees + 90) % 360;
+    }
+
+    /**
+     * Returns the nearest integer degrees of the angle whose tangent is
+     * {@code opposite / adjacent}, where {@code opposite <= adjacent}.
+     */
+    private static int getOctantDegrees(float opposite, float adjacent) {
+        // Binary search for the number of half degree boundaries below the angle.
+        int low = 0;
+        int high = TAN_HALF_DEGREES.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (opposite >= adjacent * TAN_HALF_DEGREES[mid]) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 
     private boolean getInnerCircleFromXY(float x, float y) {
         if (mIs24HourMode && mShowHours) {
-            final double dX = x - mXCenter;
-            final double dY = y - mYCenter;
-            final double distFromCenter = Math.sqrt(dX * dX + dY * dY);
-            return distFromCenter <= mHalfwayDist;
+            final float dX = x - mXCenter;
+            final float dY = y - mYCenter;
+            return dX * dX + dY * dY <= (float) mHalfwayDist * mHalfwayDist;
         }
         return false;
     }
@@ -1365,9 +1595,9 @@ public class RadialTimePickerView extends View {
                 radius = 0;
             }
 
-            final double radians = Math.toRadians(degrees);
-            final float xCenter = mXCenter + centerRadius * (float) Math.sin(radians);
-            final float yCenter = mYCenter - centerRadius * (float) Math.cos(radians);
+            final int tableDegrees = ((int) degrees) % 360;
+            final float xCenter = mXCenter + centerRadius * SIN_DEGREES[tableDegrees];
+            final float yCenter = mYCenter - centerRadius * COS_DEGREES[tableDegrees];
 
             bounds.set((int) (xCenter - radius), (int) (yCenter - radius),
                     (int) (xCenter + radius), (int) (yCenter + radius));
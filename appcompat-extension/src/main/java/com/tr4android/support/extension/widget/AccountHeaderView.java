@@ -19,6 +19,8 @@ package com.tr4android.support.extension.widget;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.os.Build;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.support.design.internal.NavigationMenuView;
 import android.support.v7.view.ContextThemeWrapper;
 import android.support.v7.widget.RecyclerView;
@@ -34,6 +36,7 @@ import com.tr4android.appcompat.extension.R;
 import com.tr4android.support.extension.animation.AnimationUtils;
 import com.tr4android.support.extension.drawable.RotationTransitionDrawable;
 import com.tr4android.support.extension.internal.AccountAdapter;
+import com.tr4android.support.extension.internal.AccountMenuAdapter;
 import com.tr4android.support.extension.internal.AccountUtils;
 import com.tr4android.support.extension.internal.IAccount;
 import com.tr4android.support.extension.utils.ThemeUtils;
@@ -63,6 +66,32 @@ public class AccountHeaderView extends RelativeLayout {
     // Whether or not the account list is currently shown
     private boolean mIsShowingAccountList;
 
+    // Whether menu and account list are merged into one adapter
+    private boolean mIsMergedListEnabled;
+
+    // The adapter merging the menu and the account list (only in merged mode)
+    private AccountMenuAdapter mMergedAdapter;
+
+    // The number of account view holders to inflate ahead of time
+    private int mWarmUpCount;
+
+    // Whether the warm up idle handler is currently registered
+    private boolean mIsWarmUpScheduled;
+
+    // Inflates one account view holder per idle callback until enough are available
+    private final MessageQueue.IdleHandler mWarmUpIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            if (!mIsShowingAccountList && mNavigationMenuView != null
+                    && mAccountListAdapter.getPrefetchedViewHolderCount() < mWarmUpCount) {
+                mAccountListAdapter.prefetchViewHolder(mNavigationMenuView);
+            }
+            mIsWarmUpScheduled = !mIsShowingAccountList && mNavigationMenuView != null
+                    && mAccountListAdapter.getPrefetchedViewHolderCount() < mWarmUpCount;
+            return mIsWarmUpScheduled;
+        }
+    };
+
     // The click listener for showing the account list
     private OnClickListener mShowAccountClickListener = new OnClickListener() {
         @Override
@@ -75,6 +104,14 @@ public class AccountHeaderView extends RelativeLayout {
         }
     };
 
+    // Updates the header once a submitted account list has been applied
+    private final Runnable mUpdateAccountHeaderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            updateAccountHeader();
+        }
+    };
+
     // The listener for account related actions
     private OnAccountSelectedListener mListener;
 
@@ -112,6 +149,8 @@ public class AccountHeaderView extends RelativeLayout {
         boolean mAddAccountEnabled = a.getBoolean(R.styleable.AccountHeaderView_accountHeaderAddEnabled, true);
         boolean mManageAccountEnabled = a.getBoolean(R.styleable.AccountHeaderView_accountHeaderManageEnabled, true);
         boolean mCheckableAccountsEnabled = a.getBoolean(R.styleable.AccountHeaderView_accountHeaderCheckableAccountsEnabled, false);
+        mWarmUpCount = a.getInt(R.styleable.AccountHeaderView_accountHeaderWarmUpCount, 0);
+        mIsMergedListEnabled = a.getBoolean(R.styleable.AccountHeaderView_accountHeaderMergedListEnabled, false);
         a.recycle();
 
         // Inflate the layout
@@ -127,14 +166,14 @@ public class AccountHeaderView extends RelativeLayout {
         mSecondaryFirstIconView.setOnClickListener(new OnClickListener() {
             @Override
             public void onClick(View v) {
-                handleAccountClick(1);
+                selectAccount(1);
             }
         });
         mSecondarySecondIconView = (CircleImageView) findViewById(R.id.account_header_icon_secondary_second);
         mSecondarySecondIconView.setOnClickListener(new OnClickListener() {
             @Override
             public void onClick(View v) {
-                handleAccountClick(2);
+                selectAccount(2);
             }
         });
 
@@ -152,28 +191,35 @@ public class AccountHeaderView extends RelativeLayout {
         mDropdownView.setOnClickListener(mShowAccountClickListener);
     }
 
-    // Handles an account click passed on by the account list adapter
+    // Handles a click on an adapter position passed on by the account list adapter
     public void handleAccountClick(int position) {
-        hideAccountList();
-        int count = mAccountListAdapter.getItemCount();
-        if (position < mAccountListAdapter.getAccountCount()) {
-            IAccount selectedAccount = mAccountListAdapter.get(position);
-            boolean makePrimary = true;
-            if (mListener != null) makePrimary = mListener.onAccountSelected(selectedAccount);
-            if (makePrimary) switchPrimaryAccount(selectedAccount);
-        } else if (position == count - 1 && mAccountListAdapter.isAccountManageEnabled()) {
+        int index = mAccountListAdapter.getAccountIndex(position);
+        if (index >= 0) {
+            selectAccount(index);
+        } else if (mAccountListAdapter.isAccountManagePosition(position)) {
+            hideAccountList();
             if (mListener != null) mListener.onAccountManageSelected();
         } else {
+            hideAccountList();
             if (mListener != null) mListener.onAccountAddSelected();
         }
     }
 
     // Handles an account check passed on by the account list adapter
-    public void handleAccountCheck(int position, boolean isChecked) {
-        IAccount checkedAccount = mAccountListAdapter.get(position);
+    public void handleAccountCheck(int index, boolean isChecked) {
+        IAccount checkedAccount = mAccountListAdapter.get(index);
         if (mListener != null) mListener.onAccountChecked(checkedAccount, isChecked);
     }
 
+    // Selects the account at the given index, making it the primary account if the listener agrees
+    private void selectAccount(int index) {
+        hideAccountList();
+        IAccount selectedAccount = mAccountListAdapter.get(index);
+        boolean makePrimary = true;
+        if (mListener != null) makePrimary = mListener.onAccountSelected(selectedAccount);
+        if (makePrimary) switchPrimaryAccount(selectedAccount);
+    }
+
     public void addAccounts(IAccount... accounts) {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
             for (IAccount account : accounts) {
@@ -214,18 +260,157 @@ public class AccountHeaderView extends RelativeLayout {
         updateAccountHeader();
     }
 
+    /**
+     * Replace the accounts with a new list. Unlike {@link #setAccounts(List)} only the
+     * accounts that were actually inserted, removed, moved or changed are updated in the
+     * account list, which is matched by {@link com.tr4android.support.extension.internal.IStableAccount}
+     * ids where available. Large lists are compared in the background and applied
+     * asynchronously.
+     *
+     * @param accounts The new accounts.
+     */
+    public void submitAccounts(List<IAccount> accounts) {
+        mAccountListAdapter.submitList(accounts, mUpdateAccountHeaderRunnable);
+    }
+
     public void checkAccount(IAccount account, boolean checked) {
         mAccountListAdapter.setChecked(mAccountListAdapter.indexOf(account), checked);
     }
 
+    /**
+     * Notify that an account was modified, updating it in the header and account list. An icon
+     * loaded by the {@link com.tr4android.support.extension.internal.IAccountIconLoader} is
+     * requested again.
+     *
+     * @param account The modified account.
+     */
+    public void notifyAccountChanged(IAccount account) {
+        AccountUtils.invalidateAccountIcon(account);
+        int position = mAccountListAdapter.indexOf(account);
+        if (position < 0) return;
+        mAccountListAdapter.notifyAccountChanged(position, null);
+        if (position <= 2) updateAccountHeader();
+    }
+
+    /**
+     * Notify that only the info icon or text of an account was modified. Only the info of the
+     * account list item will be updated.
+     *
+     * @param account The modified account.
+     */
+    public void notifyAccountInfoChanged(IAccount account) {
+        int position = mAccountListAdapter.indexOf(account);
+        if (position < 0) return;
+        mAccountListAdapter.notifyAccountChanged(position, AccountAdapter.PAYLOAD_INFO);
+    }
+
     public ArrayList<IAccount> getCheckedAccounts() {
         return mAccountListAdapter.getChecked();
     }
 
+    /**
+     * Filter the account list, showing only the accounts whose name or email contains the
+     * query (ignoring case). Refining the query only searches the previous results and matching
+     * accounts are added to the list in pages while it is scrolled, so this can be called on
+     * every key stroke of a search field even for thousands of accounts.
+     *
+     * @param query The query or null to show all accounts.
+     */
+    public void setAccountFilter(String query) {
+        mAccountListAdapter.setFilter(query);
+    }
+
+    /**
+     * Get the query the account list is filtered by.
+     *
+     * @return The query or null if all accounts are shown.
+     */
+    public String getAccountFilter() {
+        return mAccountListAdapter.getFilter();
+    }
+
+    /**
+     * Get the number of accounts in the account list matching the filter, including those not
+     * yet added to the list.
+     *
+     * @return The number of matching accounts.
+     */
+    public int getFilteredAccountCount() {
+        return mAccountListAdapter.getFilterResultCount();
+    }
+
     public void setAccountSelectedListener(OnAccountSelectedListener listener) {
         mListener = listener;
     }
 
+    /**
+     * Set the number of account list items to inflate ahead of time while the main thread is
+     * idle. This reduces the latency of showing the account list for the first time, a good
+     * value is the number of account items visible at once. Defaults to 0 (disabled).
+     *
+     * @param count The number of account list items to prepare.
+     */
+    public void setAccountListWarmUpCount(int count) {
+        mWarmUpCount = count;
+        scheduleWarmUp();
+    }
+
+    /**
+     * Get the number of account list items inflated ahead of time.
+     *
+     * @return The number of account list items to prepare.
+     */
+    public int getAccountListWarmUpCount() {
+        return mWarmUpCount;
+    }
+
+    // Helper that inflates account view holders once the main thread is idle
+    private void scheduleWarmUp() {
+        if (!mIsWarmUpScheduled && !mIsShowingAccountList && mNavigationMenuView != null
+                && mAccountListAdapter.getPrefetchedViewHolderCount() < mWarmUpCount) {
+            mIsWarmUpScheduled = true;
+            Looper.myQueue().addIdleHandler(mWarmUpIdleHandler);
+        }
+    }
+
+    /**
+     * Set whether the menu and the account list should be merged into a single adapter.
+     * Toggling the account list then replaces the menu items below the header with animations
+     * instead of swapping the adapter of the NavigationView, which keeps the header attached
+     * and the view holders of both lists around.
+     *
+     * @param enabled True to merge menu and account list, false to swap adapters.
+     */
+    public void setAccountListMergedEnabled(boolean enabled) {
+        if (mIsMergedListEnabled == enabled) return;
+        hideAccountList();
+        if (!enabled && mMergedAdapter != null) {
+            // restore the menu adapter of the NavigationView
+            mMergedAdapter.release();
+            mNavigationMenuView.setAdapter(mMergedAdapter.getMenuAdapter());
+            mMergedAdapter = null;
+        }
+        mIsMergedListEnabled = enabled;
+    }
+
+    /**
+     * Check whether the menu and the account list are merged into a single adapter.
+     *
+     * @return True if menu and account list are merged, false if adapters are swapped.
+     */
+    public boolean isAccountListMergedEnabled() {
+        return mIsMergedListEnabled;
+    }
+
+    // Helper that installs the merged adapter in the NavigationView if needed
+    private boolean ensureMergedAdapter() {
+        if (mMergedAdapter == null && mNavigationMenuView != null) {
+            mMergedAdapter = new AccountMenuAdapter(mNavigationMenuView.getAdapter(), mAccountListAdapter);
+            mNavigationMenuView.setAdapter(mMergedAdapter);
+        }
+        return mMergedAdapter != null;
+    }
+
     public boolean isShowingAccountList() {
         return mIsShowingAccountList;
     }
@@ -233,10 +418,14 @@ public class AccountHeaderView extends RelativeLayout {
     public void showAccountList() {
         if (!mIsShowingAccountList) {
             mDropdownDrawable.startTransition(200);
-            // cache menu adapter for later
-            removeViewFromParent();
-            mMenuAdapter = mNavigationMenuView.getAdapter();
-            mNavigationMenuView.setAdapter(mAccountListAdapter);
+            if (mIsMergedListEnabled && ensureMergedAdapter()) {
+                mMergedAdapter.setShowingAccounts(true);
+            } else {
+                // cache menu adapter for later
+                removeViewFromParent();
+                mMenuAdapter = mNavigationMenuView.getAdapter();
+                mNavigationMenuView.setAdapter(mAccountListAdapter);
+            }
         }
         mIsShowingAccountList = true;
     }
@@ -244,19 +433,26 @@ public class AccountHeaderView extends RelativeLayout {
     public void hideAccountList() {
         if (mIsShowingAccountList) {
             mDropdownDrawable.reverseTransition(200);
-            // reset previously cached menu adapter
-            mNavigationMenuView.setAdapter(mMenuAdapter);
-            mMenuAdapter = null;
-            addViewToParent();
+            if (mMergedAdapter != null) {
+                mMergedAdapter.setShowingAccounts(false);
+            } else {
+                // reset previously cached menu adapter
+                mNavigationMenuView.setAdapter(mMenuAdapter);
+                mMenuAdapter = null;
+                addViewToParent();
+            }
         }
         mIsShowingAccountList = false;
+        scheduleWarmUp();
     }
 
     @Override
     public void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
-        if (w > 0 && h > 0 && mNavigationMenuView == null)
+        if (w > 0 && h > 0 && mNavigationMenuView == null) {
             mNavigationMenuView = (NavigationMenuView) getParent().getParent();
+            scheduleWarmUp();
+        }
     }
 
     private void switchPrimaryAccount(IAccount newPrimaryAccount) {
@@ -268,6 +464,7 @@ public class AccountHeaderView extends RelativeLayout {
         int accountCount = mAccountListAdapter.getAccountCount();
         // primary account
         if (accountCount == 0) {
+            AccountUtils.cancelAccountIcon(mPrimaryIconView);
             mPrimaryIconView.setVisibility(GONE);
             mNameView.setVisibility(GONE);
             mEmailView.setVisibility(GONE);
@@ -282,6 +479,7 @@ public class AccountHeaderView extends RelativeLayout {
         }
         // first secondary account
         if (accountCount <= 1) {
+            AccountUtils.cancelAccountIcon(mSecondaryFirstIconView);
             mSecondaryFirstIconView.setVisibility(GONE);
         } else {
             AccountUtils.applyAccountIcon(mAccountListAdapter.get(1), mSecondaryFirstIconView);
@@ -289,6 +487,7 @@ public class AccountHeaderView extends RelativeLayout {
         }
         // second secondary account
         if (accountCount <= 2) {
+            AccountUtils.cancelAccountIcon(mSecondarySecondIconView);
             mSecondarySecondIconView.setVisibility(GONE);
         } else {
             AccountUtils.applyAccountIcon(mAccountListAdapter.get(2), mSecondarySecondIconView);
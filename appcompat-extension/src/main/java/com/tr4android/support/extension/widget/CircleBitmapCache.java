@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.widget;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.support.annotation.DrawableRes;
+import android.support.v4.util.LruCache;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * A process-wide cache of the square bitmaps displayed by {@link CircleImageView} instances,
+ * bounded by the number of bytes of the cached bitmaps. Entries are keyed by their source
+ * (resource id, uri or bitmap and drawable instance) and target size, so the same avatar bound
+ * over and over again in a list is only decoded and cropped once. Entries of bitmap and
+ * drawable instances are removed once the instance has been garbage collected.
+ * <p>
+ * The cache trims itself when the system reports memory pressure.
+ */
+final class CircleBitmapCache {
+    /** The default cache size as a fraction of the maximum heap size. */
+    private static final int DEFAULT_HEAP_FRACTION = 16;
+
+    private static CircleBitmapCache sInstance;
+
+    private final LruCache<Key, Bitmap> mCache;
+
+    // The references of collected bitmap and drawable sources, whose entries are removed
+    private final ReferenceQueue<Object> mClearedSources = new ReferenceQueue<>();
+
+    private final ComponentCallbacks2 mTrimCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+            // nothing to do here
+        }
+
+        @Override
+        public void onLowMemory() {
+            mCache.evictAll();
+        }
+    };
+
+    private CircleBitmapCache(int maxBytes) {
+        mCache = new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the shared cache, registering it for memory trim callbacks on first use.
+     *
+     * @param context any context, only its application context is retained
+     * @return the shared cache
+     */
+    static synchronized CircleBitmapCache getInstance(Context context) {
+        if (sInstance == null) {
+            int maxBytes = (int) Math.min(Integer.MAX_VALUE,
+                    Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_FRACTION);
+            sInstance = new CircleBitmapCache(maxBytes);
+            context.getApplicationContext().registerComponentCallbacks(sInstance.mTrimCallbacks);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the shared cache or null if it hasn't been used yet
+     */
+    static synchronized CircleBitmapCache peekInstance() {
+        return sInstance;
+    }
+
+    Bitmap get(Key key) {
+        purgeClearedSources();
+        return mCache.get(key);
+    }
+
+    void put(Key key, Bitmap bitmap) {
+        purgeClearedSources();
+        Key registered = key.register(mClearedSources);
+        if (registered != null) {
+            mCache.put(registered, bitmap);
+        }
+    }
+
+    void setMaxSize(int maxBytes) {
+        mCache.resize(maxBytes);
+    }
+
+    int getMaxSize() {
+        return mCache.maxSize();
+    }
+
+    int getSize() {
+        return mCache.size();
+    }
+
+    int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    int getMissCount() {
+        return mCache.missCount();
+    }
+
+    int getEvictionCount() {
+        return mCache.evictionCount();
+    }
+
+    void evictAll() {
+        mCache.evictAll();
+    }
+
+    /**
+     * Releases memory according to a {@link ComponentCallbacks2} trim level: the cache is
+     * cleared in the background and halved while the app is running low on memory.
+     */
+    void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            mCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * Returns the key of a resource. Resources may resolve differently per density and night
+     * mode, so both are part of the key.
+     */
+    static Key keyForResource(Context context, @DrawableRes int resId, int size) {
+        Resources res = context.getResources();
+        return new Key(resId, null, null, res.getDisplayMetrics().densityDpi,
+                res.getConfiguration().uiMode, size);
+    }
+
+    static Key keyForUri(Uri uri, int size) {
+        return new Key(0, uri, null, 0, 0, size);
+    }
+
+    /**
+     * Returns the key of an in-memory source (a bitmap or drawable), which is compared by
+     * identity and only weakly referenced.
+     */
+    static Key keyForSource(Object source, int size) {
+        return new Key(0, null, new SourceReference(source, null), 0, 0, size);
+    }
+
+    // Helper that removes the entries whose source has been garbage collected
+    private void purgeClearedSources() {
+        SourceReference reference;
+        while ((reference = (SourceReference) mClearedSources.poll()) != null) {
+            mCache.remove(reference.mKey);
+        }
+    }
+
+    /**
+     * A weak reference to an in-memory source, which knows the key it belongs to once the
+     * key has been put into the cache.
+     */
+    private static final class SourceReference extends WeakReference<Object> {
+        private final int mHash;
+        private Key mKey;
+
+        SourceReference(Object source, ReferenceQueue<Object> queue) {
+            super(source, queue);
+            mHash = System.identityHashCode(source);
+        }
+    }
+
+    /**
+     * The cache key of a source and target size.
+     */
+    static final class Key {
+        private final int mResId;
+        private final Uri mUri;
+        private final SourceReference mSource;
+        private final int mDensityDpi;
+        private final int mUiMode;
+        private final int mSize;
+
+        private Key(@DrawableRes int resId, Uri uri, SourceReference source, int densityDpi,
+                    int uiMode, int size) {
+            mResId = resId;
+            mUri = uri;
+            mSource = source;
+            mDensityDpi = densityDpi;
+            mUiMode = uiMode;
+            mSize = size;
+        }
+
+        // Returns a copy of a source key whose reference is enqueued once the source has been
+        // collected, other keys are returned as they are
+        private Key register(ReferenceQueue<Object> queue) {
+            if (mSource == null) return this;
+            Object source = mSource.get();
+            if (source == null) return null;
+            SourceReference reference = new SourceReference(source, queue);
+            Key key = new Key(mResId, mUri, reference, mDensityDpi, mUiMode, mSize);
+            reference.mKey = key;
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            if (mResId != other.mResId || mSize != other.mSize) return false;
+            if (mDensityDpi != other.mDensityDpi || mUiMode != other.mUiMode) return false;
+            if (mUri != null ? !mUri.equals(other.mUri) : other.mUri != null) return false;
+            if (mSource == null || other.mSource == null) return mSource == other.mSource;
+            // cleared sources only equal their own key
+            Object source = mSource.get();
+            return source != null && source == other.mSource.get();
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mResId;
+            result = 31 * result + (mUri != null ? mUri.hashCode() : 0);
+            result = 31 * result + (mSource != null ? mSource.mHash : 0);
+            result = 31 * result + mDensityDpi;
+            result = 31 * result + mUiMode;
+            result = 31 * result + mSize;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.DrawableRes;
+import android.support.v7.widget.AppCompatDrawableManager;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads images for a {@link CircleImageView} off the main thread. Images are decoded with a
+ * sample size matching the size of the view and center cropped into a square bitmap of exactly
+ * that size, so the result can be handed to a
+ * {@link android.support.v4.graphics.drawable.RoundedBitmapDrawable} without further copies.
+ * Only bitmap resources and uris are decoded in the background, other resources (e.g. vector
+ * drawables) are inflated and rasterized on the main thread, as drawable inflation isn't thread
+ * safe. Loaded bitmaps are added to the {@link CircleBitmapCache} unless their request has been
+ * cancelled.
+ */
+final class CircleBitmapLoader {
+    private static final String LOG_TAG = "CircleBitmapLoader";
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static final Executor sExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
+
+    private static final Paint sCropPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    interface Callback {
+        /**
+         * Called on the main thread once the image has been loaded.
+         *
+         * @param bitmap the square bitmap or null if the image could not be loaded
+         */
+        void onBitmapLoaded(Bitmap bitmap);
+    }
+
+    private CircleBitmapLoader() {
+    }
+
+    /**
+     * Starts loading an image resource or uri in the background.
+     *
+     * @param context  the context used for resolving the image
+     * @param resId    the resource id of the image or 0 if an uri should be loaded
+     * @param uri      the uri of the image, ignored if a resource id is specified
+     * @param size     the width and height of the resulting bitmap in pixels
+     * @param callback the callback notified on the main thread
+     * @return the request which can be used to cancel loading
+     */
+    static Request load(Context context, @DrawableRes int resId, Uri uri, int size,
+                        Callback callback) {
+        Request request = new Request(context, resId, uri, size, callback);
+        sExecutor.execute(request);
+        return request;
+    }
+
+    /**
+     * Decodes a bitmap image resource. Safe to call from any thread.
+     *
+     * @return the square bitmap or null if the resource cannot be decoded as a bitmap
+     */
+    static Bitmap decodeBitmapResource(Context context, @DrawableRes int resId, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(context.getResources(), resId, options);
+        if (options.outWidth > 0 && options.outHeight > 0) {
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, size);
+            options.inJustDecodeBounds = false;
+            Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(), resId, options);
+            if (bitmap != null) {
+                return cropToSquare(bitmap, size);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Inflates a drawable resource (e.g. a vector drawable) and rasterizes it at the requested
+     * size. Must be called on the main thread.
+     */
+    static Bitmap rasterizeResource(Context context, @DrawableRes int resId, int size) {
+        Drawable drawable = AppCompatDrawableManager.get().getDrawable(context, resId);
+        return drawable != null ? rasterize(drawable, size) : null;
+    }
+
+    /**
+     * Decodes an image uri, reading the stream twice to avoid decoding the full-size image.
+     */
+    static Bitmap decodeUri(Context context, Uri uri, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(context, uri, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, size);
+        options.inJustDecodeBounds = false;
+        Bitmap bitmap = decodeStream(context, uri, options);
+        return bitmap != null ? cropToSquare(bitmap, size) : null;
+    }
+
+    private static Bitmap decodeStream(Context context, Uri uri, BitmapFactory.Options options) {
+        InputStream stream = null;
+        try {
+            stream = context.getContentResolver().openInputStream(uri);
+            if (stream == null) return null;
+            return BitmapFactory.decodeStream(stream, null, options);
+        } catch (IOException | SecurityException e) {
+            Log.w(LOG_TAG, "Unable to open image uri: " + uri, e);
+            return null;
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                    // nothing to do here
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws a drawable into a new square bitmap of the given size.
+     */
+    static Bitmap rasterize(Drawable drawable, int size) {
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, size, size);
+        drawable.draw(canvas);
+        return bitmap;
+    }
+
+    /**
+     * Center crops and scales a bitmap into a square bitmap of the given size. The source is
+     * returned as is if it already has the requested size.
+     */
+    static Bitmap cropToSquare(Bitmap source, int size) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (width == size && height == size) {
+            return source;
+        }
+        int edge = Math.min(width, height);
+        int left = (width - edge) / 2;
+        int top = (height - edge) / 2;
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawBitmap(source, new Rect(left, top, left + edge, top + edge),
+                new Rect(0, 0, size, size), sCropPaint);
+        return bitmap;
+    }
+
+    /**
+     * Calculates the largest power of two sample size that keeps the shorter edge of the decoded
+     * image at least as large as the requested size.
+     */
+    static int calculateInSampleSize(int width, int height, int size) {
+        int inSampleSize = 1;
+        int edge = Math.min(width, height);
+        while (edge / (inSampleSize * 2) >= size) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * A single background load which delivers its result unless it has been cancelled.
+     */
+    static final class Request implements Runnable {
+        // resources are resolved with the caller's context so they match its theme, uris only
+        // need the application context
+        private final Context mContext;
+        private final int mResId;
+        private final Uri mUri;
+        private final int mSize;
+        private final CircleBitmapCache.Key mKey;
+        private final Callback mCallback;
+
+        private volatile boolean mIsCancelled;
+
+        Request(Context context, @DrawableRes int resId, Uri uri, int size, Callback callback) {
+            mContext = resId != 0 ? context : context.getApplicationContext();
+            mKey = resId != 0 ? CircleBitmapCache.keyForResource(context, resId, size)
+                    : CircleBitmapCache.keyForUri(uri, size);
+            mResId = resId;
+            mUri = uri;
+            mSize = size;
+            mCallback = callback;
+        }
+
+        /**
+         * Cancel this request. The callback will not be notified afterwards and the result is
+         * not cached. Must be called on the main thread.
+         */
+        void cancel() {
+            mIsCancelled = true;
+        }
+
+        boolean isCancelled() {
+            return mIsCancelled;
+        }
+
+        @DrawableRes
+        int getResId() {
+            return mResId;
+        }
+
+        Uri getUri() {
+            return mUri;
+        }
+
+        @Override
+        public void run() {
+            if (mIsCancelled) return;
+            Bitmap decoded = null;
+            try {
+                decoded = mResId != 0 ? decodeBitmapResource(mContext, mResId, mSize)
+                        : decodeUri(mContext, mUri, mSize);
+            } catch (RuntimeException | OutOfMemoryError e) {
+                Log.w(LOG_TAG, "Unable to load image", e);
+            }
+            final Bitmap bitmap = decoded;
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(bitmap);
+                }
+            });
+        }
+
+        // Helper that rasterizes resources which aren't bitmaps and delivers the result, called
+        // on the main thread
+        private void deliver(Bitmap bitmap) {
+            if (mIsCancelled) return;
+            if (bitmap == null && mResId != 0) {
+                try {
+                    bitmap = rasterizeResource(mContext, mResId, mSize);
+                } catch (RuntimeException | OutOfMemoryError e) {
+                    Log.w(LOG_TAG, "Unable to load image", e);
+                }
+            }
+            if (bitmap != null) {
+                CircleBitmapCache.getInstance(mContext).put(mKey, bitmap);
+            }
+            mCallback.onBitmapLoaded(bitmap);
+        }
+    }
+}
@@ -19,7 +19,12 @@ package com.tr4android.support.extension.widget;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Shader;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
@@ -42,15 +47,76 @@ import com.tr4android.support.extension.utils.ThemeUtils;
 public class CircleImageView extends AppCompatImageView {
     private static final String LOG_TAG = "CircleImageView";
 
+    /**
+     * Images are copied into a bitmap which is displayed using a
+     * {@link RoundedBitmapDrawable}. This is the default.
+     */
+    public static final int RENDER_MODE_BITMAP = 0;
+
+    /**
+     * Images are displayed as they are and clipped to a circle while drawing: bitmaps are drawn
+     * through a {@link BitmapShader}, all other drawables are rendered at the size of the view
+     * into a reused bitmap, which is drawn the same way and only rendered again when the
+     * drawable changes. This avoids the intermediate bitmap of the intrinsic size and keeps
+     * vector drawables sharp.
+     */
+    public static final int RENDER_MODE_SHADER = 1;
+
     // whether the image should be clipped to a circle
     private boolean mIsCircleImageEnabled = true;
 
+    // how the image is clipped to a circle
+    private int mRenderMode = RENDER_MODE_BITMAP;
+
+    // the circle the image is clipped to in shader mode
+    private float mCircleCenterX;
+    private float mCircleCenterY;
+    private float mCircleRadius;
+
+    // paint and shader for drawing bitmaps in shader mode
+    private final Paint mShaderPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final Matrix mShaderMatrix = new Matrix();
+    private Bitmap mShaderBitmap;
+    private boolean mShaderInvalid;
+
+    // reused bitmap and paint for drawing other drawables in shader mode
+    private final Paint mRenderPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final Matrix mRenderMatrix = new Matrix();
+    private Bitmap mRenderBitmap;
+    private Canvas mRenderCanvas;
+    private Drawable mRenderedDrawable;
+    private boolean mRenderInvalid;
+
     // whether an image drawable is being resolved
     private boolean mIsResolvingDrawable;
 
+    // whether resources and uris are loaded in the background
+    private boolean mIsAsyncLoadingEnabled;
+
+    // the pending background load (if any)
+    private CircleBitmapLoader.Request mPendingRequest;
+
+    // the resource id or uri waiting for the view to be measured or attached before loading
+    private int mDeferredResId;
+    private Uri mDeferredUri;
+
+    // receives the result of background loads
+    private final CircleBitmapLoader.Callback mLoaderCallback = new CircleBitmapLoader.Callback() {
+        @Override
+        public void onBitmapLoaded(Bitmap bitmap) {
+            mPendingRequest = null;
+            if (bitmap != null) {
+                CircleImageView.super.setImageDrawable(createCircleDrawable(bitmap));
+            }
+        }
+    };
+
     // the placeholder drawable used for drawing the placeholder
     private PlaceholderDrawable mPlaceholderDrawable;
 
+    // whether a placeholder has been set, which is then shown while loading in the background
+    private boolean mIsPlaceholderSet;
+
     // default color for circle
     private int mPlaceholderCircleDefaultColor;
 
@@ -67,6 +133,8 @@ public class CircleImageView extends AppCompatImageView {
 
         TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.CircleImageView, defStyleAttr, 0);
         mIsCircleImageEnabled = a.getBoolean(R.styleable.CircleImageView_circleImageEnabled, true);
+        mIsAsyncLoadingEnabled = a.getBoolean(R.styleable.CircleImageView_circleImageAsync, false);
+        mRenderMode = a.getInt(R.styleable.CircleImageView_circleImageRenderMode, RENDER_MODE_BITMAP);
         mPlaceholderCircleDefaultColor = a.getColor(R.styleable.CircleImageView_placeholderCircleColor, ThemeUtils.getThemeAttrColor(getContext(), R.attr.colorAccent));
         int textColorPrimaryInverse = ThemeUtils.getThemeAttrColor(getContext(), android.R.attr.textColorPrimaryInverse);
         int mPlaceholderTextSize = a.getDimensionPixelSize(R.styleable.CircleImageView_placeholderTextSize, getResources().getDimensionPixelSize(R.dimen.defaultPlaceholderTextSize));
@@ -81,8 +149,12 @@ public class CircleImageView extends AppCompatImageView {
 
     @Override
     public void setImageBitmap(Bitmap bm) {
-        if (mIsCircleImageEnabled) {
-            setImageDrawable(getCircleBitmapDrawable(getContext(), bm));
+        cancelPendingLoad();
+        if (isShaderModeEnabled()) {
+            super.setImageBitmap(bm);
+        } else if (mIsCircleImageEnabled) {
+            Bitmap cached = mIsAsyncLoadingEnabled && bm != null ? getCachedCircleBitmap(bm) : null;
+            setImageDrawable(getCircleBitmapDrawable(getContext(), cached != null ? cached : bm));
         } else {
             super.setImageBitmap(bm);
         }
@@ -90,9 +162,17 @@ public class CircleImageView extends AppCompatImageView {
 
     @Override
     public void setImageDrawable(Drawable drawable) {
-        if (mIsCircleImageEnabled && drawable != null &&
+        cancelPendingLoad();
+        if (!isShaderModeEnabled() && mIsCircleImageEnabled && drawable != null &&
                 !(drawable instanceof RoundedBitmapDrawable) && !(drawable instanceof PlaceholderDrawable)) {
-            setImageDrawable(getCircleBitmapDrawable(getContext(), getBitmapFromDrawable(drawable)));
+            Bitmap bitmap = null;
+            if (mIsAsyncLoadingEnabled) {
+                Bitmap source = drawable instanceof BitmapDrawable
+                        ? ((BitmapDrawable) drawable).getBitmap() : null;
+                bitmap = getCachedCircleBitmap(source != null ? source : drawable);
+            }
+            if (bitmap == null) bitmap = getBitmapFromDrawable(drawable);
+            setImageDrawable(getCircleBitmapDrawable(getContext(), bitmap));
         } else {
             super.setImageDrawable(drawable);
         }
@@ -100,7 +180,10 @@ public class CircleImageView extends AppCompatImageView {
 
     @Override
     public void setImageResource(@DrawableRes int resId) {
-        if (mIsCircleImageEnabled) {
+        cancelPendingLoad();
+        if (mIsCircleImageEnabled && mIsAsyncLoadingEnabled && resId != 0) {
+            loadCircleBitmap(resId, null);
+        } else if (mIsCircleImageEnabled && !isShaderModeEnabled()) {
             mIsResolvingDrawable = true;
             super.setImageResource(resId);
             mIsResolvingDrawable = false;
@@ -112,7 +195,10 @@ public class CircleImageView extends AppCompatImageView {
 
     @Override
     public void setImageURI(Uri uri) {
-        if (mIsCircleImageEnabled) {
+        cancelPendingLoad();
+        if (mIsCircleImageEnabled && mIsAsyncLoadingEnabled && uri != null) {
+            loadCircleBitmap(0, uri);
+        } else if (mIsCircleImageEnabled && !isShaderModeEnabled()) {
             mIsResolvingDrawable = true;
             super.setImageURI(uri);
             mIsResolvingDrawable = false;
@@ -140,6 +226,58 @@ public class CircleImageView extends AppCompatImageView {
         return mIsCircleImageEnabled;
     }
 
+    /**
+     * Set how images are clipped to a circle. Changing the render mode only affects images set
+     * afterwards.
+     *
+     * @param renderMode either {@link #RENDER_MODE_BITMAP} or {@link #RENDER_MODE_SHADER}
+     */
+    public void setRenderMode(int renderMode) {
+        if (renderMode != RENDER_MODE_BITMAP && renderMode != RENDER_MODE_SHADER) {
+            throw new IllegalArgumentException("Invalid render mode: " + renderMode);
+        }
+        if (mRenderMode != renderMode) {
+            mRenderMode = renderMode;
+            invalidate();
+        }
+    }
+
+    /**
+     * Get how images are clipped to a circle
+     *
+     * @return either {@link #RENDER_MODE_BITMAP} or {@link #RENDER_MODE_SHADER}
+     */
+    public int getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * Set whether image resources and uris should be loaded in the background. While an image
+     * is loading the last placeholder set is shown, or the default placeholder circle if none
+     * was set. Loads are cancelled when a different image or placeholder is set, which makes
+     * this suitable for views that are rebound in lists.
+     * <p/>
+     * Loaded images as well as bitmaps and drawables set while the view is measured are cropped
+     * to the size of the view and kept in a cache shared by all CircleImageViews, so binding the
+     * same image again doesn't convert it again. Bitmaps and drawables are looked up by instance.
+     * <p/>
+     * Note: This only takes effect while circular images are enabled.
+     *
+     * @param enabled pass true to load images asynchronously, false to load them synchronously
+     */
+    public void setAsyncLoadingEnabled(boolean enabled) {
+        mIsAsyncLoadingEnabled = enabled;
+    }
+
+    /**
+     * Check whether image resources and uris are loaded in the background
+     *
+     * @return true if asynchronous loading is enabled, false otherwise
+     */
+    public boolean isAsyncLoadingEnabled() {
+        return mIsAsyncLoadingEnabled;
+    }
+
     /**
      * Set a placeholder with a text. This will use the default circle color.
      * <p/>
@@ -163,6 +301,7 @@ public class CircleImageView extends AppCompatImageView {
      */
     public void setPlaceholder(String placeholderText, @ColorInt int circleColor) {
         mPlaceholderDrawable.setPlaceholder(placeholderText, circleColor);
+        mIsPlaceholderSet = true;
         setImageDrawable(mPlaceholderDrawable);
     }
 
@@ -202,6 +341,7 @@ public class CircleImageView extends AppCompatImageView {
      */
     public void setPlaceholder(Drawable drawable, @ColorInt int circleColor) {
         mPlaceholderDrawable.setPlaceholder(drawable, circleColor);
+        mIsPlaceholderSet = true;
         setImageDrawable(mPlaceholderDrawable);
     }
 
@@ -215,10 +355,299 @@ public class CircleImageView extends AppCompatImageView {
         return String.valueOf(text.charAt(0)).toUpperCase();
     }
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateCircle();
+        loadDeferredCircleBitmap();
+    }
+
+    @Override
+    public void setPadding(int left, int top, int right, int bottom) {
+        super.setPadding(left, top, right, bottom);
+        updateCircle();
+    }
+
+    // Helper that returns whether images are clipped while drawing
+    private boolean isShaderModeEnabled() {
+        return mIsCircleImageEnabled && mRenderMode == RENDER_MODE_SHADER;
+    }
+
+    // Helper that wraps a loaded bitmap according to the render mode
+    private Drawable createCircleDrawable(Bitmap bitmap) {
+        if (isShaderModeEnabled()) {
+            return new BitmapDrawable(getResources(), bitmap);
+        }
+        return getCircleBitmapDrawable(getContext(), bitmap);
+    }
+
+    // Helper that updates the circle within the padding used in shader mode
+    private void updateCircle() {
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        mCircleCenterX = getPaddingLeft() + width / 2f;
+        mCircleCenterY = getPaddingTop() + height / 2f;
+        mCircleRadius = Math.max(0, Math.min(width, height) / 2f);
+        mShaderInvalid = true;
+        mRenderInvalid = true;
+    }
+
+    // Helper that returns the size of the cropped image or 0 if the view hasn't been measured
+    private int getContentSize() {
+        return Math.max(0, Math.max(getWidth() - getPaddingLeft() - getPaddingRight(),
+                getHeight() - getPaddingTop() - getPaddingBottom()));
+    }
+
+    // Helper that returns a bitmap or drawable cropped to the size of the view from the shared
+    // cache, converting and caching it if needed, or null if the view hasn't been measured yet
+    private Bitmap getCachedCircleBitmap(Object source) {
+        int size = getContentSize();
+        if (size == 0) return null;
+        CircleBitmapCache cache = CircleBitmapCache.getInstance(getContext());
+        CircleBitmapCache.Key key = CircleBitmapCache.keyForSource(source, size);
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            if (source instanceof Bitmap) {
+                bitmap = CircleBitmapLoader.cropToSquare((Bitmap) source, size);
+                // a source of the right size is used as is, caching it would keep it alive
+                if (bitmap == source) return bitmap;
+            } else {
+                bitmap = CircleBitmapLoader.rasterize((Drawable) source, size);
+            }
+            cache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    // Helper that shows the cropped image from the cache or loads it in the background while
+    // showing the placeholder (or the default placeholder if none was set)
+    private void loadCircleBitmap(@DrawableRes int resId, Uri uri) {
+        int size = getContentSize();
+        if (size > 0) {
+            CircleBitmapCache.Key key = resId != 0
+                    ? CircleBitmapCache.keyForResource(getContext(), resId, size)
+                    : CircleBitmapCache.keyForUri(uri, size);
+            Bitmap bitmap = CircleBitmapCache.getInstance(getContext()).get(key);
+            if (bitmap != null) {
+                super.setImageDrawable(createCircleDrawable(bitmap));
+                return;
+            }
+        }
+
+        if (!mIsPlaceholderSet) {
+            mPlaceholderDrawable.setPlaceholder("", mPlaceholderCircleDefaultColor);
+        }
+        super.setImageDrawable(mPlaceholderDrawable);
+        if (size == 0) {
+            // wait for the view to be measured so the image can be downsampled
+            mDeferredResId = resId;
+            mDeferredUri = uri;
+        } else {
+            mPendingRequest = CircleBitmapLoader.load(getContext(), resId, uri, size, mLoaderCallback);
+        }
+    }
+
+    // Helper that starts loading the deferred resource id or uri (if any)
+    private void loadDeferredCircleBitmap() {
+        if (mDeferredResId == 0 && mDeferredUri == null) return;
+        int resId = mDeferredResId;
+        Uri uri = mDeferredUri;
+        mDeferredResId = 0;
+        mDeferredUri = null;
+        loadCircleBitmap(resId, uri);
+    }
+
+    // Helper that cancels the pending background load (if any)
+    private void cancelPendingLoad() {
+        if (mPendingRequest != null) {
+            mPendingRequest.cancel();
+            mPendingRequest = null;
+        }
+        mDeferredResId = 0;
+        mDeferredUri = null;
+    }
+
     @Override
     public void onDraw(Canvas canvas) {
         if (mIsResolvingDrawable) return;
-        super.onDraw(canvas);
+        Drawable drawable = getDrawable();
+        if (!isShaderModeEnabled() || drawable == null || mCircleRadius <= 0
+                || drawable instanceof PlaceholderDrawable || drawable instanceof RoundedBitmapDrawable) {
+            super.onDraw(canvas);
+        } else if (drawable instanceof BitmapDrawable
+                && ((BitmapDrawable) drawable).getBitmap() != null) {
+            drawBitmapCircle(canvas, (BitmapDrawable) drawable);
+        } else {
+            drawRenderedCircle(canvas, drawable);
+        }
+    }
+
+    // Helper that draws a bitmap center cropped into the circle through a shader
+    private void drawBitmapCircle(Canvas canvas, BitmapDrawable drawable) {
+        Bitmap bitmap = drawable.getBitmap();
+        if (mShaderBitmap != bitmap) {
+            mShaderBitmap = bitmap;
+            mShaderPaint.setShader(new BitmapShader(bitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+            mShaderInvalid = true;
+        }
+        if (mShaderInvalid) {
+            float diameter = 2 * mCircleRadius;
+            float scale = Math.max(diameter / bitmap.getWidth(), diameter / bitmap.getHeight());
+            mShaderMatrix.setScale(scale, scale);
+            mShaderMatrix.postTranslate(mCircleCenterX - bitmap.getWidth() * scale / 2f,
+                    mCircleCenterY - bitmap.getHeight() * scale / 2f);
+            mShaderPaint.getShader().setLocalMatrix(mShaderMatrix);
+            mShaderInvalid = false;
+        }
+        Paint bitmapPaint = drawable.getPaint();
+        mShaderPaint.setAlpha(bitmapPaint.getAlpha());
+        mShaderPaint.setColorFilter(bitmapPaint.getColorFilter());
+        canvas.drawCircle(mCircleCenterX, mCircleCenterY, mCircleRadius, mShaderPaint);
+    }
+
+    // Helper that draws any other drawable into the circle through a shader, rendering it into
+    // the reused bitmap first if it has changed. Unlike clipping this is anti-aliased and works
+    // on hardware accelerated canvases of all API levels.
+    private void drawRenderedCircle(Canvas canvas, Drawable drawable) {
+        int size = (int) Math.ceil(2 * mCircleRadius);
+        if (mRenderBitmap == null || mRenderBitmap.getWidth() != size) {
+            if (mRenderBitmap != null) mRenderBitmap.recycle();
+            mRenderBitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            mRenderCanvas = new Canvas(mRenderBitmap);
+            mRenderPaint.setShader(new BitmapShader(mRenderBitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+            mRenderInvalid = true;
+        }
+        if (mRenderInvalid || mRenderedDrawable != drawable) {
+            float left = mCircleCenterX - mCircleRadius;
+            float top = mCircleCenterY - mCircleRadius;
+            mRenderBitmap.eraseColor(Color.TRANSPARENT);
+            int saveCount = mRenderCanvas.save();
+            mRenderCanvas.translate(-left, -top);
+            super.onDraw(mRenderCanvas);
+            mRenderCanvas.restoreToCount(saveCount);
+            mRenderMatrix.setTranslate(left, top);
+            mRenderPaint.getShader().setLocalMatrix(mRenderMatrix);
+            mRenderedDrawable = drawable;
+            mRenderInvalid = false;
+        }
+        canvas.drawCircle(mCircleCenterX, mCircleCenterY, mCircleRadius, mRenderPaint);
+    }
+
+    // Helper that releases the bitmap used for drawing other drawables in shader mode
+    private void releaseRenderBitmap() {
+        if (mRenderBitmap != null) {
+            mRenderBitmap.recycle();
+            mRenderBitmap = null;
+            mRenderCanvas = null;
+            mRenderPaint.setShader(null);
+        }
+        mRenderedDrawable = null;
+    }
+
+    @Override
+    public void invalidateDrawable(Drawable dr) {
+        if (dr == getDrawable()) mRenderInvalid = true;
+        super.invalidateDrawable(dr);
+    }
+
+    @Override
+    public void setScaleType(ScaleType scaleType) {
+        super.setScaleType(scaleType);
+        mRenderInvalid = true;
+    }
+
+    @Override
+    public void setImageMatrix(Matrix matrix) {
+        super.setImageMatrix(matrix);
+        mRenderInvalid = true;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        // otherwise loaded once the view has been measured
+        if (getContentSize() > 0) loadDeferredCircleBitmap();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // rendered again on the next draw
+        releaseRenderBitmap();
+        if (mPendingRequest != null) {
+            // don't decode for a view that is gone, restarted if the view is attached again
+            int resId = mPendingRequest.getResId();
+            Uri uri = mPendingRequest.getUri();
+            cancelPendingLoad();
+            mDeferredResId = resId;
+            mDeferredUri = uri;
+        }
+    }
+
+    /**
+     * Set the maximum size in bytes of the image cache shared by all CircleImageViews.
+     * By default the cache may use up to 1/16 of the maximum heap size.
+     *
+     * @param context  any context
+     * @param maxBytes the maximum size in bytes
+     */
+    public static void setImageCacheMaxSize(Context context, int maxBytes) {
+        CircleBitmapCache.getInstance(context).setMaxSize(maxBytes);
+    }
+
+    /**
+     * Release memory of the shared image cache. The cache already listens for trim callbacks
+     * of the application, this is for components that want to trim it more aggressively.
+     *
+     * @param level the memory trim level, see {@link android.content.ComponentCallbacks2}
+     */
+    public static void trimImageCache(int level) {
+        CircleBitmapCache cache = CircleBitmapCache.peekInstance();
+        if (cache != null) {
+            cache.trimMemory(level);
+        }
+    }
+
+    /**
+     * Remove all images from the shared image cache.
+     */
+    public static void clearImageCache() {
+        CircleBitmapCache cache = CircleBitmapCache.peekInstance();
+        if (cache != null) {
+            cache.evictAll();
+        }
+    }
+
+    /**
+     * @return the current size in bytes of the shared image cache
+     */
+    public static int getImageCacheSize() {
+        CircleBitmapCache cache = CircleBitmapCache.peekInstance();
+        return cache != null ? cache.getSize() : 0;
+    }
+
+    /**
+     * @return the number of times an image was found in the shared image cache
+     */
+    public static int getImageCacheHitCount() {
+        CircleBitmapCache cache = CircleBitmapCache.peekInstance();
+        return cache != null ? cache.getHitCount() : 0;
+    }
+
+    /**
+     * @return the number of times an image was missing from the shared image cache
+     */
+    public static int getImageCacheMissCount() {
+        CircleBitmapCache cache = CircleBitmapCache.peekInstance();
+        return cache != null ? cache.getMissCount() : 0;
+    }
+
+    /**
+     * @return the number of images evicted from the shared image cache
+     */
+    public static int getImageCacheEvictionCount() {
+        CircleBitmapCache cache = CircleBitmapCache.peekInstance();
+        return cache != null ? cache.getEvictionCount() : 0;
     }
 
     /**
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.widget;
+
+/**
+ * A table of values sampled at {@link #STEPS} + 1 evenly spaced collapse fractions, used by the
+ * collapsing helpers to bake their interpolated positions, sizes and colors at layout time.
+ * Looking up a fraction linearly blends the two closest samples, so a scroll frame doesn't need
+ * to evaluate any interpolators.
+ */
+final class CollapseCurve {
+    static final int STEPS = 256;
+
+    private final int mChannelCount;
+    private final float[] mValues;
+    private final int[] mColors;
+    private boolean mIsValid;
+
+    /**
+     * @param channelCount the number of float values per sample
+     * @param colored      whether a color should be sampled in addition to the float values
+     */
+    CollapseCurve(int channelCount, boolean colored) {
+        mChannelCount = channelCount;
+        mValues = new float[(STEPS + 1) * channelCount];
+        mColors = colored ? new int[STEPS + 1] : null;
+    }
+
+    /**
+     * @return the collapse fraction of a sample
+     */
+    static float getFraction(int step) {
+        return step / (float) STEPS;
+    }
+
+    void setValue(int step, int channel, float value) {
+        mValues[step * mChannelCount + channel] = value;
+    }
+
+    void setColor(int step, int color) {
+        mColors[step] = color;
+    }
+
+    /**
+     * Returns the value of a channel at a collapse fraction, blending the closest samples.
+     */
+    float getValue(float fraction, int channel) {
+        final float position = fraction * STEPS;
+        int step = (int) position;
+        if (step >= STEPS) {
+            return mValues[STEPS * mChannelCount + channel];
+        }
+        final float start = mValues[step * mChannelCount + channel];
+        final float end = mValues[(step + 1) * mChannelCount + channel];
+        return start + (position - step) * (end - start);
+    }
+
+    /**
+     * Returns the color of the sample closest to a collapse fraction. Neighbouring samples differ
+     * by less than what is visible, so colors aren't blended.
+     */
+    int getColor(float fraction) {
+        return mColors[Math.round(fraction * STEPS)];
+    }
+
+    boolean isValid() {
+        return mIsValid;
+    }
+
+    void setValid(boolean valid) {
+        mIsValid = valid;
+    }
+}
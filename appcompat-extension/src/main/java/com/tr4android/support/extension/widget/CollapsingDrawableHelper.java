@@ -31,6 +31,13 @@ import android.view.animation.Interpolator;
 import com.tr4android.support.extension.animation.AnimationUtils;
 
 public class CollapsingDrawableHelper {
+    // Channels of the baked collapse curve
+    private static final int CURVE_BOUNDS_LEFT = 0;
+    private static final int CURVE_BOUNDS_TOP = 1;
+    private static final int CURVE_BOUNDS_RIGHT = 2;
+    private static final int CURVE_BOUNDS_BOTTOM = 3;
+    private static final int CURVE_CHANNEL_COUNT = 4;
+
     private final View mView;
 
     private boolean mDrawIcon;
@@ -47,6 +54,12 @@ public class CollapsingDrawableHelper {
     
     private Interpolator mIconSizeInterpolator;
     private Interpolator mPositionInterpolator;
+
+    // Whether the caller invalidates the view, see setExpansionFraction(float, boolean)
+    private boolean mDeferInvalidate;
+
+    // The collapse curve baked at layout time or null if baked collapse is disabled
+    private CollapseCurve mCurve;
     
     public CollapsingDrawableHelper(View view) {
         mView = view;
@@ -102,18 +115,47 @@ public class CollapsingDrawableHelper {
      * A value of {@code 1.0} indicates that the layout is fully collapsed.
      */
     void setExpansionFraction(float fraction) {
+        setExpansionFraction(fraction, true);
+    }
+
+    /**
+     * Set the expansion fraction, optionally leaving the invalidation of the view to the caller
+     * so it can be shared with other helpers.
+     *
+     * @return true if the fraction has changed and the view needs to be redrawn
+     */
+    boolean setExpansionFraction(float fraction, boolean invalidate) {
         fraction = constrain(fraction, 0f, 1f);
 
         if (fraction != mExpandedFraction) {
             mExpandedFraction = fraction;
+            mDeferInvalidate = !invalidate;
             calculateCurrentOffsets();
+            mDeferInvalidate = false;
+            return true;
         }
+        return false;
     }
 
     float getExpansionFraction() {
         return mExpandedFraction;
     }
 
+    /**
+     * Set whether the icon bounds should be sampled at layout time, so fraction changes only
+     * look them up instead of evaluating the interpolators.
+     */
+    void setBakedCollapseEnabled(boolean enabled) {
+        if (enabled != (mCurve != null)) {
+            mCurve = enabled ? new CollapseCurve(CURVE_CHANNEL_COUNT, false) : null;
+            recalculate();
+        }
+    }
+
+    boolean isBakedCollapseEnabled() {
+        return mCurve != null;
+    }
+
     float getCollapsedIconSize() {
         return mCollapsedIconSize;
     }
@@ -127,7 +169,15 @@ public class CollapsingDrawableHelper {
     }
 
     private void calculateOffsets(final float fraction) {
-        interpolateBounds(fraction);
+        final CollapseCurve curve = mCurve;
+        if (curve != null && curve.isValid()) {
+            mCurrentBounds.set(curve.getValue(fraction, CURVE_BOUNDS_LEFT),
+                    curve.getValue(fraction, CURVE_BOUNDS_TOP),
+                    curve.getValue(fraction, CURVE_BOUNDS_RIGHT),
+                    curve.getValue(fraction, CURVE_BOUNDS_BOTTOM));
+        } else {
+            interpolateBounds(fraction);
+        }
 
         if (mDrawable != null) {
             // Set new bounds for the drawable
@@ -135,7 +185,28 @@ public class CollapsingDrawableHelper {
                     Math.round(mCurrentBounds.right), Math.round(mCurrentBounds.bottom));
         }
 
-        ViewCompat.postInvalidateOnAnimation(mView);
+        invalidateView();
+    }
+
+    private void invalidateView() {
+        if (!mDeferInvalidate) {
+            ViewCompat.postInvalidateOnAnimation(mView);
+        }
+    }
+
+    /**
+     * Samples the interpolated bounds into the baked curve.
+     */
+    private void bakeCurve() {
+        final CollapseCurve curve = mCurve;
+        for (int step = 0; step <= CollapseCurve.STEPS; step++) {
+            interpolateBounds(CollapseCurve.getFraction(step));
+            curve.setValue(step, CURVE_BOUNDS_LEFT, mCurrentBounds.left);
+            curve.setValue(step, CURVE_BOUNDS_TOP, mCurrentBounds.top);
+            curve.setValue(step, CURVE_BOUNDS_RIGHT, mCurrentBounds.right);
+            curve.setValue(step, CURVE_BOUNDS_BOTTOM, mCurrentBounds.bottom);
+        }
+        curve.setValid(true);
     }
 
     private void interpolateBounds(float fraction) {
@@ -160,10 +231,29 @@ public class CollapsingDrawableHelper {
         canvas.restoreToCount(saveCount);
     }
 
+    /**
+     * Get the area the drawable is currently drawn in.
+     *
+     * @param outRect the rect receiving the area, set to empty if no drawable is drawn
+     */
+    void getDrawnBounds(Rect outRect) {
+        if (mDrawable == null || !mDrawIcon) {
+            outRect.setEmpty();
+            return;
+        }
+        outRect.set(mDrawable.getBounds());
+    }
+
     public void recalculate() {
+        if (mCurve != null) {
+            mCurve.setValid(false);
+        }
         if (mView.getHeight() > 0 && mView.getWidth() > 0) {
             // If we've already been laid out, calculate everything now otherwise we'll wait
             // until a layout
+            if (mCurve != null) {
+                bakeCurve();
+            }
             calculateCurrentOffsets();
         }
     }
@@ -31,6 +31,7 @@ import android.support.v4.view.GravityCompat;
 import android.support.v4.view.ViewCompat;
 import android.text.TextPaint;
 import android.text.TextUtils;
+import android.util.SparseArray;
 import android.view.Gravity;
 import android.view.View;
 import android.view.animation.Interpolator;
@@ -44,6 +45,26 @@ final class CollapsingTextHelper {
     // by using our own texture
     private static final boolean USE_SCALING_TEXTURE = Build.VERSION.SDK_INT < 18;
 
+    // How scaled text is drawn, see FlexibleToolbarLayout#setTextRenderMode(int)
+    static final int RENDER_MODE_AUTO = 0;
+    static final int RENDER_MODE_DIRECT = 1;
+    static final int RENDER_MODE_TEXTURE = 2;
+
+    // Ellipsized texts are cached for available widths rounded down to multiples of this (in px)
+    private static final int ELLIPSIZE_WIDTH_BUCKET = 2;
+    private static final int MAX_ELLIPSIZE_CACHE_SIZE = 64;
+
+    // Channels of the baked collapse curve
+    private static final int CURVE_BOUNDS_LEFT = 0;
+    private static final int CURVE_BOUNDS_TOP = 1;
+    private static final int CURVE_BOUNDS_RIGHT = 2;
+    private static final int CURVE_BOUNDS_BOTTOM = 3;
+    private static final int CURVE_DRAW_X = 4;
+    private static final int CURVE_DRAW_Y = 5;
+    private static final int CURVE_TEXT_SIZE = 6;
+    private static final int CURVE_AVAILABLE_WIDTH = 7;
+    private static final int CURVE_CHANNEL_COUNT = 8;
+
     private static final boolean DEBUG_DRAW = false;
     private static final Paint DEBUG_DRAW_PAINT;
 
@@ -91,9 +112,24 @@ final class CollapsingTextHelper {
     private CharSequence mTextToDraw;
     private boolean mIsRtl;
 
+    // Ellipsized texts by width bucket, valid for the text, text size and typeface below
+    private final SparseArray<CharSequence> mEllipsizeCache = new SparseArray<>();
+    private CharSequence mEllipsizeCacheText;
+    private float mEllipsizeCacheTextSize;
+    private Typeface mEllipsizeCacheTypeface;
+    private float mEllipsizeCacheTextWidth;
+    private int mEllipsizeCount;
+    private int mLastFrameEllipsizeCount;
+
+    private int mRenderMode = RENDER_MODE_AUTO;
     private boolean mUseTexture;
     private Bitmap mExpandedTitleTexture;
+    private Canvas mTextureCanvas;
     private Paint mTexturePaint;
+    // Whether the texture contains the current text, the texture itself is kept for reuse
+    private boolean mTextureValid;
+    private final Rect mTextureSrcRect = new Rect();
+    private final RectF mTextureDstRect = new RectF();
     private float mTextureAscent;
     private float mTextureDescent;
 
@@ -102,6 +138,12 @@ final class CollapsingTextHelper {
 
     private boolean mBoundsChanged;
 
+    // Whether the caller invalidates the view, see setExpansionFraction(float, boolean)
+    private boolean mDeferInvalidate;
+
+    // The collapse curve baked at layout time or null if baked collapse is disabled
+    private CollapseCurve mCurve;
+
     private final TextPaint mTextPaint;
 
     private Interpolator mPositionInterpolator;
@@ -328,18 +370,73 @@ final class CollapsingTextHelper {
      * A value of {@code 1.0} indicates that the layout is fully collapsed.
      */
     void setExpansionFraction(float fraction) {
+        setExpansionFraction(fraction, true);
+    }
+
+    /**
+     * Set the expansion fraction, optionally leaving the invalidation of the view to the caller
+     * so it can be shared with other helpers.
+     *
+     * @return true if the fraction has changed and the view needs to be redrawn
+     */
+    boolean setExpansionFraction(float fraction, boolean invalidate) {
         fraction = constrain(fraction, 0f, 1f);
 
         if (fraction != mExpandedFraction) {
             mExpandedFraction = fraction;
+            mDeferInvalidate = !invalidate;
             calculateCurrentOffsets();
+            mDeferInvalidate = false;
+            return true;
         }
+        return false;
     }
 
     float getExpansionFraction() {
         return mExpandedFraction;
     }
 
+    void setRenderMode(int renderMode) {
+        if (mRenderMode != renderMode) {
+            mRenderMode = renderMode;
+            if (!canUseTexture()) {
+                releaseTexture();
+            }
+            recalculate();
+        }
+    }
+
+    int getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * Set whether the positions, text size and color should be sampled at layout time, so
+     * fraction changes only look them up instead of evaluating the interpolators.
+     */
+    void setBakedCollapseEnabled(boolean enabled) {
+        if (enabled != (mCurve != null)) {
+            mCurve = enabled ? new CollapseCurve(CURVE_CHANNEL_COUNT, true) : null;
+            recalculate();
+        }
+    }
+
+    boolean isBakedCollapseEnabled() {
+        return mCurve != null;
+    }
+
+    private boolean canUseTexture() {
+        switch (mRenderMode) {
+            case RENDER_MODE_TEXTURE:
+                return true;
+            case RENDER_MODE_DIRECT:
+                return false;
+            case RENDER_MODE_AUTO:
+            default:
+                return USE_SCALING_TEXTURE;
+        }
+    }
+
     float getCollapsedTextSize() {
         return mCollapsedTextSize;
     }
@@ -361,21 +458,28 @@ final class CollapsingTextHelper {
     }
 
     private void calculateOffsets(final float fraction) {
-        interpolateBounds(fraction);
-        mCurrentDrawX = lerp(mExpandedDrawX, mCollapsedDrawX, fraction,
-                mPositionInterpolator);
-        mCurrentDrawY = lerp(mExpandedDrawY, mCollapsedDrawY, fraction,
-                mPositionInterpolator);
+        final CollapseCurve curve = mCurve;
+        if (curve != null && curve.isValid()) {
+            // Look everything up in the baked curve
+            mCurrentBounds.set(curve.getValue(fraction, CURVE_BOUNDS_LEFT),
+                    curve.getValue(fraction, CURVE_BOUNDS_TOP),
+                    curve.getValue(fraction, CURVE_BOUNDS_RIGHT),
+                    curve.getValue(fraction, CURVE_BOUNDS_BOTTOM));
+            mCurrentDrawX = curve.getValue(fraction, CURVE_DRAW_X);
+            mCurrentDrawY = curve.getValue(fraction, CURVE_DRAW_Y);
+            setInterpolatedTextSize(curve.getValue(fraction, CURVE_TEXT_SIZE));
+            mTextPaint.setColor(curve.getColor(fraction));
+        } else {
+            interpolateBounds(fraction);
+            mCurrentDrawX = lerp(mExpandedDrawX, mCollapsedDrawX, fraction,
+                    mPositionInterpolator);
+            mCurrentDrawY = lerp(mExpandedDrawY, mCollapsedDrawY, fraction,
+                    mPositionInterpolator);
 
-        setInterpolatedTextSize(lerp(mExpandedTextSize, mCollapsedTextSize,
-                fraction, mTextSizeInterpolator));
+            setInterpolatedTextSize(lerp(mExpandedTextSize, mCollapsedTextSize,
+                    fraction, mTextSizeInterpolator));
 
-        if (mCollapsedTextColor != mExpandedTextColor) {
-            // If the collapsed and expanded text colors are different, blend them based on the
-            // fraction
-            mTextPaint.setColor(blendColors(mExpandedTextColor, mCollapsedTextColor, fraction));
-        } else {
-            mTextPaint.setColor(mCollapsedTextColor);
+            mTextPaint.setColor(getTextColor(fraction));
         }
 
         mTextPaint.setShadowLayer(
@@ -384,7 +488,7 @@ final class CollapsingTextHelper {
                 lerp(mExpandedShadowDy, mCollapsedShadowDy, fraction, null),
                 blendColors(mExpandedShadowColor, mCollapsedShadowColor, fraction));
 
-        ViewCompat.postInvalidateOnAnimation(mView);
+        invalidateView();
     }
 
     private void calculateBaseOffsets() {
@@ -465,6 +569,48 @@ final class CollapsingTextHelper {
         setInterpolatedTextSize(currentTextSize);
     }
 
+    private int getTextColor(float fraction) {
+        if (mCollapsedTextColor != mExpandedTextColor) {
+            // If the collapsed and expanded text colors are different, blend them based on the
+            // fraction
+            return blendColors(mExpandedTextColor, mCollapsedTextColor, fraction);
+        }
+        return mCollapsedTextColor;
+    }
+
+    private float getAvailableWidth(float fraction) {
+        return lerp(mExpandedBounds.width(), mCollapsedBounds.width(), fraction,
+                mTextSizeInterpolator);
+    }
+
+    /**
+     * Samples everything that is interpolated while collapsing into the baked curve. Must be
+     * called after the base offsets have been calculated.
+     */
+    private void bakeCurve() {
+        final CollapseCurve curve = mCurve;
+        for (int step = 0; step <= CollapseCurve.STEPS; step++) {
+            final float fraction = CollapseCurve.getFraction(step);
+            curve.setValue(step, CURVE_BOUNDS_LEFT, lerp(mExpandedBounds.left,
+                    mCollapsedBounds.left, fraction, mPositionInterpolator));
+            curve.setValue(step, CURVE_BOUNDS_TOP, lerp(mExpandedDrawY,
+                    mCollapsedDrawY, fraction, mPositionInterpolator));
+            curve.setValue(step, CURVE_BOUNDS_RIGHT, lerp(mExpandedBounds.right,
+                    mCollapsedBounds.right, fraction, mPositionInterpolator));
+            curve.setValue(step, CURVE_BOUNDS_BOTTOM, lerp(mExpandedBounds.bottom,
+                    mCollapsedBounds.bottom, fraction, mPositionInterpolator));
+            curve.setValue(step, CURVE_DRAW_X, lerp(mExpandedDrawX, mCollapsedDrawX,
+                    fraction, mPositionInterpolator));
+            curve.setValue(step, CURVE_DRAW_Y, lerp(mExpandedDrawY, mCollapsedDrawY,
+                    fraction, mPositionInterpolator));
+            curve.setValue(step, CURVE_TEXT_SIZE, lerp(mExpandedTextSize, mCollapsedTextSize,
+                    fraction, mTextSizeInterpolator));
+            curve.setValue(step, CURVE_AVAILABLE_WIDTH, getAvailableWidth(fraction));
+            curve.setColor(step, getTextColor(fraction));
+        }
+        curve.setValid(true);
+    }
+
     private void interpolateBounds(float fraction) {
         mCurrentBounds.left = lerp(mExpandedBounds.left, mCollapsedBounds.left,
                 fraction, mPositionInterpolator);
@@ -477,13 +623,21 @@ final class CollapsingTextHelper {
     }
 
     public void draw(Canvas canvas) {
+        mLastFrameEllipsizeCount = mEllipsizeCount;
+        mEllipsizeCount = 0;
+
         final int saveCount = canvas.save();
 
         if (mTextToDraw != null && mDrawTitle) {
+            if (mUseTexture && !mTextureValid) {
+                // The texture has been released (e.g. when the view was detached)
+                rebuildExpandedTexture();
+            }
+
             float x = mCurrentDrawX;
             float y = mCurrentDrawY;
 
-            final boolean drawTexture = mUseTexture && mExpandedTitleTexture != null;
+            final boolean drawTexture = mUseTexture && mTextureValid;
 
             final float ascent;
             final float descent;
@@ -515,7 +669,9 @@ final class CollapsingTextHelper {
 
             if (drawTexture) {
                 // If we should use a texture, draw it instead of text
-                canvas.drawBitmap(mExpandedTitleTexture, x, y, mTexturePaint);
+                mTextureDstRect.set(x, y, x + mTextureSrcRect.width(), y + mTextureSrcRect.height());
+                canvas.drawBitmap(mExpandedTitleTexture, mTextureSrcRect, mTextureDstRect,
+                        mTexturePaint);
             } else {
                 canvas.drawText(mTextToDraw, 0, mTextToDraw.length(), x, y, mTextPaint);
             }
@@ -524,6 +680,38 @@ final class CollapsingTextHelper {
         canvas.restoreToCount(saveCount);
     }
 
+    /**
+     * Get the area the text is currently drawn in, including its shadow.
+     *
+     * @param outRect the rect receiving the area, set to empty if no text is drawn
+     */
+    void getDrawnBounds(Rect outRect) {
+        if (mTextToDraw == null || !mDrawTitle) {
+            outRect.setEmpty();
+            return;
+        }
+        final float ascent = mTextPaint.ascent() * mScale;
+        final float descent = mTextPaint.descent() * mScale;
+        final float shadow = Math.max(getShadowExtent(mExpandedShadowRadius, mExpandedShadowDx,
+                mExpandedShadowDy), getShadowExtent(mCollapsedShadowRadius, mCollapsedShadowDx,
+                mCollapsedShadowDy));
+        // Add a pixel to account for anti-aliasing
+        outRect.set((int) Math.floor(Math.min(mCurrentBounds.left, mCurrentDrawX) - shadow) - 1,
+                (int) Math.floor(mCurrentDrawY + ascent - shadow) - 1,
+                (int) Math.ceil(mCurrentBounds.right + shadow) + 1,
+                (int) Math.ceil(mCurrentDrawY + descent + shadow) + 1);
+    }
+
+    private static float getShadowExtent(float radius, float dx, float dy) {
+        return radius + Math.max(Math.abs(dx), Math.abs(dy));
+    }
+
+    private void invalidateView() {
+        if (!mDeferInvalidate) {
+            ViewCompat.postInvalidateOnAnimation(mView);
+        }
+    }
+
     private boolean calculateIsRtl(CharSequence text) {
         final boolean defaultIsRtl = ViewCompat.getLayoutDirection(mView)
                 == ViewCompat.LAYOUT_DIRECTION_RTL;
@@ -536,21 +724,23 @@ final class CollapsingTextHelper {
         calculateUsingTextSize(textSize);
 
         // Use our texture if the scale isn't 1.0
-        mUseTexture = USE_SCALING_TEXTURE && mScale != 1f;
+        mUseTexture = canUseTexture() && mScale != 1f;
 
         if (mUseTexture) {
             // Make sure we have an expanded texture if needed
             ensureExpandedTexture();
         }
 
-        ViewCompat.postInvalidateOnAnimation(mView);
+        invalidateView();
     }
 
     private void calculateUsingTextSize(final float textSize) {
         if (mText == null) return;
 
-        final float availableWidth = lerp(mExpandedBounds.width(), mCollapsedBounds.width(),
-                mExpandedFraction, mTextSizeInterpolator);
+        final CollapseCurve curve = mCurve;
+        final float availableWidth = curve != null && curve.isValid()
+                ? curve.getValue(mExpandedFraction, CURVE_AVAILABLE_WIDTH)
+                : getAvailableWidth(mExpandedFraction);
         final float newTextSize;
         boolean updateDrawText = false;
 
@@ -588,9 +778,7 @@ final class CollapsingTextHelper {
         }
 
         // Now we update the text ellipsis...
-        mTextPaint.setTextSize(textSize);
-        final CharSequence title = TextUtils.ellipsize(mText, mTextPaint,
-                availableWidth, TextUtils.TruncateAt.END);
+        final CharSequence title = ellipsize(textSize, availableWidth);
         if (!TextUtils.equals(title, mTextToDraw)) {
             mTextToDraw = title;
             mIsRtl = calculateIsRtl(mTextToDraw);
@@ -598,8 +786,60 @@ final class CollapsingTextHelper {
         mTextPaint.setTextSize(mCurrentTextSize);
     }
 
+    /**
+     * Ellipsizes the text to the available width at the given text size. Text scales linearly
+     * with its size, so the width is converted to the current text size and results are cached
+     * by the width rounded down to {@link #ELLIPSIZE_WIDTH_BUCKET}. While scrolling, the text is
+     * only ellipsized again when the width crosses into another bucket.
+     */
+    private CharSequence ellipsize(float textSize, float availableWidth) {
+        final float baseTextSize = mCurrentTextSize;
+        if (availableWidth <= 0 || textSize <= 0 || baseTextSize <= 0) {
+            mEllipsizeCount++;
+            mTextPaint.setTextSize(textSize);
+            return TextUtils.ellipsize(mText, mTextPaint, availableWidth, TextUtils.TruncateAt.END);
+        }
+
+        mTextPaint.setTextSize(baseTextSize);
+        final Typeface typeface = mTextPaint.getTypeface();
+        if (mEllipsizeCacheText != mText || mEllipsizeCacheTextSize != baseTextSize
+                || mEllipsizeCacheTypeface != typeface) {
+            mEllipsizeCache.clear();
+            mEllipsizeCacheText = mText;
+            mEllipsizeCacheTextSize = baseTextSize;
+            mEllipsizeCacheTypeface = typeface;
+            mEllipsizeCacheTextWidth = mTextPaint.measureText(mText, 0, mText.length());
+        }
+
+        final float width = availableWidth * baseTextSize / textSize;
+        if (width >= mEllipsizeCacheTextWidth) {
+            // The whole text fits, so there is nothing to ellipsize
+            return mText;
+        }
+        final int bucket = (int) (width / ELLIPSIZE_WIDTH_BUCKET);
+        CharSequence ellipsized = mEllipsizeCache.get(bucket);
+        if (ellipsized == null) {
+            if (mEllipsizeCache.size() >= MAX_ELLIPSIZE_CACHE_SIZE) {
+                mEllipsizeCache.clear();
+            }
+            mEllipsizeCount++;
+            ellipsized = TextUtils.ellipsize(mText, mTextPaint,
+                    bucket * ELLIPSIZE_WIDTH_BUCKET, TextUtils.TruncateAt.END);
+            mEllipsizeCache.put(bucket, ellipsized);
+        }
+        return ellipsized;
+    }
+
+    /**
+     * Returns the number of times the text was ellipsized between the last two calls to
+     * {@link #draw(Canvas)}.
+     */
+    int getLastFrameEllipsizeCount() {
+        return mLastFrameEllipsizeCount;
+    }
+
     private void ensureExpandedTexture() {
-        if (mExpandedTitleTexture != null || mExpandedBounds.isEmpty()
+        if (mTextureValid || mExpandedBounds.isEmpty()
                 || TextUtils.isEmpty(mTextToDraw)) {
             return;
         }
@@ -611,14 +851,15 @@ final class CollapsingTextHelper {
         final int w = Math.round(mTextPaint.measureText(mTextToDraw, 0, mTextToDraw.length()));
         final int h = Math.round(mTextureDescent - mTextureAscent);
 
-        if (w <= 0 && h <= 0) {
+        if (w <= 0 || h <= 0) {
             return; // If the width or height are 0, return
         }
 
-        mExpandedTitleTexture = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
-
-        Canvas c = new Canvas(mExpandedTitleTexture);
-        c.drawText(mTextToDraw, 0, mTextToDraw.length(), 0, h - mTextPaint.descent(), mTextPaint);
+        prepareTexture(w, h);
+        mTextureCanvas.drawText(mTextToDraw, 0, mTextToDraw.length(), 0, h - mTextPaint.descent(),
+                mTextPaint);
+        mTextureSrcRect.set(0, 0, w, h);
+        mTextureValid = true;
 
         if (mTexturePaint == null) {
             // Make sure we have a paint
@@ -627,10 +868,16 @@ final class CollapsingTextHelper {
     }
 
     public void recalculate() {
+        if (mCurve != null) {
+            mCurve.setValid(false);
+        }
         if (mView.getHeight() > 0 && mView.getWidth() > 0) {
             // If we've already been laid out, calculate everything now otherwise we'll wait
             // until a layout
             calculateBaseOffsets();
+            if (mCurve != null) {
+                bakeCurve();
+            }
             calculateCurrentOffsets();
         }
     }
@@ -653,7 +900,57 @@ final class CollapsingTextHelper {
         return mText;
     }
 
+    /**
+     * Makes sure the texture is at least w x h pixels large and cleared. The texture is reused
+     * if it is large enough or, from KitKat on, if its allocation can be reconfigured to the
+     * new size, so changes of the text or the bounds don't allocate a new texture every time.
+     */
+    private void rebuildExpandedTexture() {
+        if (mExpandedBounds.isEmpty() || TextUtils.isEmpty(mTextToDraw)) {
+            return;
+        }
+        // Building the texture calculates the expanded offsets, so restore the current ones
+        // afterwards without invalidating the view that is being drawn
+        final boolean deferInvalidate = mDeferInvalidate;
+        mDeferInvalidate = true;
+        ensureExpandedTexture();
+        calculateCurrentOffsets();
+        mDeferInvalidate = deferInvalidate;
+    }
+
+    private void prepareTexture(int w, int h) {
+        Bitmap texture = mExpandedTitleTexture;
+        if (texture != null && texture.getWidth() >= w && texture.getHeight() >= h) {
+            texture.eraseColor(Color.TRANSPARENT);
+            return;
+        }
+        if (texture != null && Build.VERSION.SDK_INT >= 19
+                && texture.getAllocationByteCount() >= w * h * 4) {
+            texture.reconfigure(w, h, Bitmap.Config.ARGB_8888);
+            texture.eraseColor(Color.TRANSPARENT);
+        } else {
+            if (texture != null) {
+                texture.recycle();
+            }
+            texture = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+            mExpandedTitleTexture = texture;
+        }
+        if (mTextureCanvas == null) {
+            mTextureCanvas = new Canvas();
+        }
+        mTextureCanvas.setBitmap(texture);
+    }
+
     private void clearTexture() {
+        mTextureValid = false;
+    }
+
+    /**
+     * Releases the texture, it will be recreated the next time it is needed.
+     */
+    void releaseTexture() {
+        mTextureValid = false;
+        mTextureCanvas = null;
         if (mExpandedTitleTexture != null) {
             mExpandedTitleTexture.recycle();
             mExpandedTitleTexture = null;
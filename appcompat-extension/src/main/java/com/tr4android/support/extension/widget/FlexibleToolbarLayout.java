@@ -24,6 +24,7 @@ import android.graphics.Rect;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.SystemClock;
 import android.support.annotation.ColorInt;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.IntDef;
@@ -46,7 +47,6 @@ import android.widget.ImageView;
 
 import com.tr4android.appcompat.extension.R;
 import com.tr4android.support.extension.animation.AnimationUtils;
-import com.tr4android.support.extension.animation.ValueAnimatorCompat;
 import com.tr4android.support.extension.internal.ViewOffsetHelper;
 
 import java.lang.annotation.Retention;
@@ -107,11 +107,32 @@ import java.lang.annotation.RetentionPolicy;
  * @attr ref android.support.design.R.styleable#FlexibleToolbarLayout_expandedMarginBottom
  * @attr ref android.support.design.R.styleable#FlexibleToolbarLayout_statusBarScrimColor
  * @attr ref android.support.design.R.styleable#FlexibleToolbarLayout_toolbarRefId
+ * @attr ref android.support.design.R.styleable#FlexibleToolbarLayout_textRenderMode
+ * @attr ref android.support.design.R.styleable#FlexibleToolbarLayout_bakedCollapseEnabled
  */
 public class FlexibleToolbarLayout extends FrameLayout {
 
     private static final int SCRIM_ANIMATION_DURATION = 600;
 
+    /**
+     * Scaled title and subtitle text is drawn from a texture on platforms whose hardware
+     * accelerated canvas doesn't support scaled text (before Jelly Bean MR2) and directly
+     * otherwise. This is the default.
+     */
+    public static final int TEXT_RENDER_MODE_AUTO = CollapsingTextHelper.RENDER_MODE_AUTO;
+
+    /**
+     * Title and subtitle are always drawn as text. This gives the sharpest text but requires
+     * the text to be laid out and rasterized at a new size for every frame.
+     */
+    public static final int TEXT_RENDER_MODE_DIRECT = CollapsingTextHelper.RENDER_MODE_DIRECT;
+
+    /**
+     * Title and subtitle are drawn into a texture at their expanded size once, which is then
+     * scaled down while collapsing. This is the cheapest mode for long titles on slow GPUs.
+     */
+    public static final int TEXT_RENDER_MODE_TEXTURE = CollapsingTextHelper.RENDER_MODE_TEXTURE;
+
     private boolean mRefreshToolbar = true;
     private int mToolbarId;
     private Toolbar mToolbar;
@@ -123,6 +144,9 @@ public class FlexibleToolbarLayout extends FrameLayout {
     private int mExpandedMarginBottom;
 
     private final Rect mTmpRect = new Rect();
+    // Areas which need to be redrawn after an offset change
+    private final Rect mDirtyRect = new Rect();
+    private final Rect mTmpDirtyRect = new Rect();
     private final Rect mExpandedBounds = new Rect();
     private boolean mDrawTitles;
     private int mSpaceTitleSubtitle;
@@ -141,11 +165,28 @@ public class FlexibleToolbarLayout extends FrameLayout {
     private Drawable mStatusBarScrim;
     private int mScrimAlpha;
     private boolean mScrimsAreShown;
-    private ValueAnimatorCompat mScrimAnimator;
+
+    // State of the scrim animation, which is stepped once per frame by mScrimFrameRunnable or
+    // by the OffsetUpdateListener if the offset changes in the same frame
+    private boolean mScrimAnimating;
+    private boolean mScrimSteppedByOffset;
+    private long mScrimAnimationStartTime;
+    private int mScrimAnimationStartAlpha;
+    private int mScrimAnimationTargetAlpha;
 
     private AppBarLayout.OnOffsetChangedListener mOnOffsetChangedListener;
 
     private int mCurrentOffset;
+    // Whether the next offset has to be dispatched even if it didn't change
+    private boolean mOffsetDispatchPending = true;
+
+    // The children which may be offset while collapsing, collected during layout. The collapse
+    // mode and parallax multiplier are read from the layout params on every offset change, as
+    // changing them doesn't request a layout.
+    private ViewOffsetHelper[] mCollapsingChildHelpers = new ViewOffsetHelper[0];
+    private LayoutParams[] mCollapsingChildParams = new LayoutParams[0];
+    private int[] mCollapsingChildHeights = new int[0];
+    private int mCollapsingChildCount;
 
     private WindowInsetsCompat mLastInsets;
 
@@ -267,6 +308,11 @@ public class FlexibleToolbarLayout extends FrameLayout {
 
         mToolbarId = a.getResourceId(R.styleable.FlexibleToolbarLayout_toolbarRefId, -1);
 
+        setTextRenderMode(a.getInt(R.styleable.FlexibleToolbarLayout_textRenderMode,
+                TEXT_RENDER_MODE_AUTO));
+        setBakedCollapseEnabled(a.getBoolean(
+                R.styleable.FlexibleToolbarLayout_bakedCollapseEnabled, false));
+
         a.recycle();
 
         setWillNotDraw(false);
@@ -305,6 +351,17 @@ public class FlexibleToolbarLayout extends FrameLayout {
             ((AppBarLayout) parent).removeOnOffsetChangedListener(mOnOffsetChangedListener);
         }
 
+        // Free the text textures, they are recreated when needed
+        mTitleCollapsingTextHelper.releaseTexture();
+        mSubtitleCollapsingTextHelper.releaseTexture();
+
+        // Jump to the end of a running scrim animation
+        if (mScrimAnimating) {
+            mScrimAnimating = false;
+            removeCallbacks(mScrimFrameRunnable);
+            updateScrimAlpha(mScrimAnimationTargetAlpha);
+        }
+
         super.onDetachedFromWindow();
     }
 
@@ -316,7 +373,6 @@ public class FlexibleToolbarLayout extends FrameLayout {
         // Instead, we draw it here, before our collapsing text.
         ensureToolbar();
         if (mToolbar == null && mContentScrim != null && mScrimAlpha > 0) {
-            mContentScrim.mutate().setAlpha(mScrimAlpha);
             mContentScrim.draw(canvas);
         }
 
@@ -338,7 +394,6 @@ public class FlexibleToolbarLayout extends FrameLayout {
             if (topInset > 0) {
                 mStatusBarScrim.setBounds(0, -mCurrentOffset, getWidth(),
                         topInset - mCurrentOffset);
-                mStatusBarScrim.mutate().setAlpha(mScrimAlpha);
                 mStatusBarScrim.draw(canvas);
             }
         }
@@ -351,7 +406,6 @@ public class FlexibleToolbarLayout extends FrameLayout {
         // drawChild() call, and draw our scrim first when drawing the toolbar
         ensureToolbar();
         if (child == mToolbar && mContentScrim != null && mScrimAlpha > 0) {
-            mContentScrim.mutate().setAlpha(mScrimAlpha);
             mContentScrim.draw(canvas);
         }
 
@@ -508,8 +562,16 @@ public class FlexibleToolbarLayout extends FrameLayout {
             mIconCollapsingHelper.recalculate();
         }
 
-        // Update our child view offset helpers
-        for (int i = 0, z = getChildCount(); i < z; i++) {
+        // Update our child view offset helpers and collect them, so offset changes don't need to
+        // look them up
+        final int childCount = getChildCount();
+        if (mCollapsingChildHelpers.length < childCount) {
+            mCollapsingChildHelpers = new ViewOffsetHelper[childCount];
+            mCollapsingChildParams = new LayoutParams[childCount];
+            mCollapsingChildHeights = new int[childCount];
+        }
+        mCollapsingChildCount = 0;
+        for (int i = 0; i < childCount; i++) {
             final View child = getChildAt(i);
 
             if (mLastInsets != null && !ViewCompat.getFitsSystemWindows(child)) {
@@ -521,8 +583,20 @@ public class FlexibleToolbarLayout extends FrameLayout {
                 }
             }
 
-            getViewOffsetHelper(child).onViewLayout();
+            final ViewOffsetHelper offsetHelper = getViewOffsetHelper(child);
+            offsetHelper.onViewLayout();
+
+            final int index = mCollapsingChildCount++;
+            mCollapsingChildHelpers[index] = offsetHelper;
+            mCollapsingChildParams[index] = (LayoutParams) child.getLayoutParams();
+            mCollapsingChildHeights[index] = child.getHeight();
         }
+        // Drop references to removed children
+        for (int i = mCollapsingChildCount; i < mCollapsingChildHelpers.length; i++) {
+            mCollapsingChildHelpers[i] = null;
+            mCollapsingChildParams[i] = null;
+        }
+        mOffsetDispatchPending = true;
 
         // Finally, set our minimum height to enable proper AppBarLayout collapsing
         if (mToolbar != null) {
@@ -772,6 +846,7 @@ public class FlexibleToolbarLayout extends FrameLayout {
             if (animate) {
                 animateScrim(shown ? 0xFF : 0x0);
             } else {
+                mScrimAnimating = false;
                 setScrimAlpha(shown ? 0xFF : 0x0);
             }
             mScrimsAreShown = shown;
@@ -780,32 +855,113 @@ public class FlexibleToolbarLayout extends FrameLayout {
 
     private void animateScrim(int targetAlpha) {
         ensureToolbar();
-        if (mScrimAnimator == null) {
-            mScrimAnimator = AnimationUtils.createAnimator();
-            mScrimAnimator.setDuration(SCRIM_ANIMATION_DURATION);
-            mScrimAnimator.setInterpolator(AnimationUtils.FAST_OUT_SLOW_IN_INTERPOLATOR);
-            mScrimAnimator.setUpdateListener(new ValueAnimatorCompat.AnimatorUpdateListener() {
-                @Override
-                public void onAnimationUpdate(ValueAnimatorCompat animator) {
-                    setScrimAlpha(animator.getAnimatedIntValue());
-                }
-            });
-        } else if (mScrimAnimator.isRunning()) {
-            mScrimAnimator.cancel();
+        mScrimAnimationStartTime = SystemClock.uptimeMillis();
+        mScrimAnimationStartAlpha = mScrimAlpha;
+        mScrimAnimationTargetAlpha = targetAlpha;
+        mScrimSteppedByOffset = false;
+        if (!mScrimAnimating) {
+            mScrimAnimating = true;
+            // Drop a callback that is left over from an animation finished by the offset listener
+            removeCallbacks(mScrimFrameRunnable);
+            ViewCompat.postOnAnimation(this, mScrimFrameRunnable);
         }
+    }
 
-        mScrimAnimator.setIntValues(mScrimAlpha, targetAlpha);
-        mScrimAnimator.start();
+    // Helper that advances the scrim animation to the current time, returns whether the alpha
+    // changed
+    private boolean stepScrimAnimation() {
+        final long elapsed = SystemClock.uptimeMillis() - mScrimAnimationStartTime;
+        final float fraction = Math.min(1f, elapsed / (float) SCRIM_ANIMATION_DURATION);
+        if (fraction >= 1f) {
+            mScrimAnimating = false;
+        }
+        return updateScrimAlpha(AnimationUtils.lerp(mScrimAnimationStartAlpha,
+                mScrimAnimationTargetAlpha,
+                AnimationUtils.FAST_OUT_SLOW_IN_INTERPOLATOR.getInterpolation(fraction)));
     }
 
+    private final Runnable mScrimFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mScrimAnimating) {
+                return;
+            }
+            if (mScrimSteppedByOffset) {
+                // The offset listener already advanced the animation for this frame
+                mScrimSteppedByOffset = false;
+            } else if (stepScrimAnimation()) {
+                invalidateScrim();
+            }
+            if (mScrimAnimating) {
+                ViewCompat.postOnAnimation(FlexibleToolbarLayout.this, this);
+            }
+        }
+    };
+
     private void setScrimAlpha(int alpha) {
-        if (alpha != mScrimAlpha) {
-            final Drawable contentScrim = mContentScrim;
-            if (contentScrim != null && mToolbar != null) {
+        if (updateScrimAlpha(alpha)) {
+            invalidateScrim();
+        }
+    }
+
+    // Helper that applies the alpha to the scrims without invalidating, returns whether it changed
+    private boolean updateScrimAlpha(int alpha) {
+        if (alpha == mScrimAlpha) {
+            return false;
+        }
+        // Both scrims are mutated when they are set, so the alpha is only applied on changes
+        if (mContentScrim != null) {
+            mContentScrim.setAlpha(alpha);
+        }
+        if (mStatusBarScrim != null) {
+            mStatusBarScrim.setAlpha(alpha);
+        }
+        mScrimAlpha = alpha;
+        return true;
+    }
+
+    // Helper that invalidates the areas covered by the scrims
+    private void invalidateScrim() {
+        if (mContentScrim != null) {
+            if (mToolbar != null) {
                 ViewCompat.postInvalidateOnAnimation(mToolbar);
             }
-            mScrimAlpha = alpha;
+            // The content scrim covers the whole layout
             ViewCompat.postInvalidateOnAnimation(FlexibleToolbarLayout.this);
+        } else if (getStatusBarScrimBounds(mTmpDirtyRect)) {
+            ViewCompat.postInvalidateOnAnimation(FlexibleToolbarLayout.this, mTmpDirtyRect.left,
+                    mTmpDirtyRect.top, mTmpDirtyRect.right, mTmpDirtyRect.bottom);
+        }
+    }
+
+    // Helper that returns the area of the status bar scrim, false if it isn't drawn
+    private boolean getStatusBarScrimBounds(Rect outRect) {
+        final int topInset = mLastInsets != null ? mLastInsets.getSystemWindowInsetTop() : 0;
+        if (mStatusBarScrim == null || topInset <= 0) {
+            return false;
+        }
+        outRect.set(0, -mCurrentOffset, getWidth(), topInset - mCurrentOffset);
+        return true;
+    }
+
+    // Helper that adds the areas drawn by the collapsing helpers and the status bar scrim
+    private void addDrawnRegions(Rect dirtyRect) {
+        if (mDrawTitles) {
+            if (mCollapsingTitleEnabled) {
+                mTitleCollapsingTextHelper.getDrawnBounds(mTmpDirtyRect);
+                dirtyRect.union(mTmpDirtyRect);
+            }
+            if (mCollapsingSubtitleEnabled) {
+                mSubtitleCollapsingTextHelper.getDrawnBounds(mTmpDirtyRect);
+                dirtyRect.union(mTmpDirtyRect);
+            }
+            if (mCollapsingIconEnabled) {
+                mIconCollapsingHelper.getDrawnBounds(mTmpDirtyRect);
+                dirtyRect.union(mTmpDirtyRect);
+            }
+        }
+        if (mScrimAlpha > 0 && getStatusBarScrimBounds(mTmpDirtyRect)) {
+            dirtyRect.union(mTmpDirtyRect);
         }
     }
 
@@ -883,9 +1039,13 @@ public class FlexibleToolbarLayout extends FrameLayout {
                 mStatusBarScrim.setCallback(null);
             }
 
-            mStatusBarScrim = drawable;
-            drawable.setCallback(this);
-            drawable.mutate().setAlpha(mScrimAlpha);
+            if (drawable != null) {
+                mStatusBarScrim = drawable.mutate();
+                drawable.setCallback(this);
+                drawable.setAlpha(mScrimAlpha);
+            } else {
+                mStatusBarScrim = null;
+            }
             ViewCompat.postInvalidateOnAnimation(this);
         }
     }
@@ -962,6 +1122,77 @@ public class FlexibleToolbarLayout extends FrameLayout {
         mTitleCollapsingTextHelper.setExpandedTextColor(color);
     }
 
+    /**
+     * Set how the title and subtitle are drawn while they are scaled.
+     *
+     * @param renderMode one of {@link #TEXT_RENDER_MODE_AUTO}, {@link #TEXT_RENDER_MODE_DIRECT}
+     *                   or {@link #TEXT_RENDER_MODE_TEXTURE}
+     * @attr ref R.styleable#FlexibleToolbarLayout_textRenderMode
+     * @see #getTextRenderMode()
+     * @since 0.6.0
+     */
+    public void setTextRenderMode(int renderMode) {
+        if (renderMode != TEXT_RENDER_MODE_AUTO && renderMode != TEXT_RENDER_MODE_DIRECT
+                && renderMode != TEXT_RENDER_MODE_TEXTURE) {
+            throw new IllegalArgumentException("Invalid text render mode: " + renderMode);
+        }
+        mTitleCollapsingTextHelper.setRenderMode(renderMode);
+        mSubtitleCollapsingTextHelper.setRenderMode(renderMode);
+    }
+
+    /**
+     * Returns how the title and subtitle are drawn while they are scaled.
+     *
+     * @return one of {@link #TEXT_RENDER_MODE_AUTO}, {@link #TEXT_RENDER_MODE_DIRECT}
+     * or {@link #TEXT_RENDER_MODE_TEXTURE}
+     * @see #setTextRenderMode(int)
+     * @since 0.6.0
+     */
+    public int getTextRenderMode() {
+        return mTitleCollapsingTextHelper.getRenderMode();
+    }
+
+    /**
+     * Set whether the positions, sizes and colors of the title, subtitle and icon should be
+     * sampled at layout time. Scrolling then only looks up and blends the closest samples
+     * instead of evaluating the interpolators for every frame.
+     *
+     * @param enabled whether baked collapse should be enabled
+     * @attr ref R.styleable#FlexibleToolbarLayout_bakedCollapseEnabled
+     * @see #isBakedCollapseEnabled()
+     * @since 0.6.0
+     */
+    public void setBakedCollapseEnabled(boolean enabled) {
+        mTitleCollapsingTextHelper.setBakedCollapseEnabled(enabled);
+        mSubtitleCollapsingTextHelper.setBakedCollapseEnabled(enabled);
+        mIconCollapsingHelper.setBakedCollapseEnabled(enabled);
+    }
+
+    /**
+     * Returns whether the positions, sizes and colors of the title, subtitle and icon are
+     * sampled at layout time.
+     *
+     * @return true if baked collapse is enabled
+     * @see #setBakedCollapseEnabled(boolean)
+     * @since 0.6.0
+     */
+    public boolean isBakedCollapseEnabled() {
+        return mTitleCollapsingTextHelper.isBakedCollapseEnabled();
+    }
+
+    /**
+     * Returns the number of times the title and subtitle had to be ellipsized for the last
+     * drawn frame. Ellipsized texts are cached, so this should be 0 for most frames while the
+     * layout is scrolled.
+     *
+     * @return The number of ellipsize calls of the last frame.
+     * @since 0.6.0
+     */
+    public int getLastFrameEllipsizeCount() {
+        return mTitleCollapsingTextHelper.getLastFrameEllipsizeCount()
+                + mSubtitleCollapsingTextHelper.getLastFrameEllipsizeCount();
+    }
+
     /**
      * The additional offset used to define when to trigger the scrim visibility change.
      */
@@ -1060,7 +1291,7 @@ public class FlexibleToolbarLayout extends FrameLayout {
         }
 
         /**
-         * Set the collapse mode.
+         * Set the collapse mode. Takes effect with the next offset change, no layout is needed.
          *
          * @param collapseMode one of {@link #COLLAPSE_MODE_OFF}, {@link #COLLAPSE_MODE_PIN}
          *                     or {@link #COLLAPSE_MODE_PARALLAX}.
@@ -1083,7 +1314,8 @@ public class FlexibleToolbarLayout extends FrameLayout {
         /**
          * Set the parallax scroll multiplier used in conjunction with
          * {@link #COLLAPSE_MODE_PARALLAX}. A value of {@code 0.0} indicates no movement at all,
-         * {@code 1.0f} indicates normal scroll movement.
+         * {@code 1.0f} indicates normal scroll movement. Takes effect with the next offset
+         * change, no layout is needed.
          *
          * @param multiplier the multiplier.
          * @see #getParallaxMultiplier()
@@ -1106,19 +1338,26 @@ public class FlexibleToolbarLayout extends FrameLayout {
     private class OffsetUpdateListener implements AppBarLayout.OnOffsetChangedListener {
         @Override
         public void onOffsetChanged(AppBarLayout layout, int verticalOffset) {
-            mCurrentOffset = verticalOffset;
-
+            if (verticalOffset == mCurrentOffset && !mOffsetDispatchPending) {
+                // Nothing has changed since the last offset was dispatched
+                return;
+            }
             final int insetTop = mLastInsets != null ? mLastInsets.getSystemWindowInsetTop() : 0;
-            final int scrollRange = layout.getTotalScrollRange();
+            final int height = getHeight();
 
-            for (int i = 0, z = getChildCount(); i < z; i++) {
-                final View child = getChildAt(i);
-                final LayoutParams lp = (LayoutParams) child.getLayoutParams();
-                final ViewOffsetHelper offsetHelper = getViewOffsetHelper(child);
+            // Collect the areas drawn before the offset change
+            mDirtyRect.setEmpty();
+            addDrawnRegions(mDirtyRect);
 
+            mCurrentOffset = verticalOffset;
+            mOffsetDispatchPending = false;
+
+            for (int i = 0; i < mCollapsingChildCount; i++) {
+                final ViewOffsetHelper offsetHelper = mCollapsingChildHelpers[i];
+                final LayoutParams lp = mCollapsingChildParams[i];
                 switch (lp.mCollapseMode) {
                     case LayoutParams.COLLAPSE_MODE_PIN:
-                        if (getHeight() - insetTop + verticalOffset >= child.getHeight()) {
+                        if (height - insetTop + verticalOffset >= mCollapsingChildHeights[i]) {
                             offsetHelper.setTopAndBottomOffset(-verticalOffset);
                         }
                         break;
@@ -1134,17 +1373,30 @@ public class FlexibleToolbarLayout extends FrameLayout {
                 setScrimsShown(getHeight() + verticalOffset < getScrimTriggerOffset() + insetTop);
             }
 
-            if (mStatusBarScrim != null && insetTop > 0) {
-                ViewCompat.postInvalidateOnAnimation(FlexibleToolbarLayout.this);
+            // Advance a running scrim animation now, so it is drawn together with the offset
+            boolean scrimChanged = false;
+            if (mScrimAnimating) {
+                scrimChanged = stepScrimAnimation();
+                mScrimSteppedByOffset = true;
             }
 
-            // Update the collapsing text's fraction
-            final int expandRange = getHeight() - ViewCompat.getMinimumHeight(
+            // Update the collapsing text's fraction, invalidating only once for all helpers
+            final int expandRange = height - ViewCompat.getMinimumHeight(
                     FlexibleToolbarLayout.this) - insetTop;
             float fraction = Math.abs(verticalOffset) / (float) expandRange;
-            mTitleCollapsingTextHelper.setExpansionFraction(fraction);
-            mSubtitleCollapsingTextHelper.setExpansionFraction(fraction);
-            mIconCollapsingHelper.setExpansionFraction(fraction);
+            boolean invalidate = mStatusBarScrim != null && insetTop > 0;
+            invalidate |= mTitleCollapsingTextHelper.setExpansionFraction(fraction, false);
+            invalidate |= mSubtitleCollapsingTextHelper.setExpansionFraction(fraction, false);
+            invalidate |= mIconCollapsingHelper.setExpansionFraction(fraction, false);
+
+            // Only redraw the areas drawn before and after the offset change
+            addDrawnRegions(mDirtyRect);
+            if (scrimChanged && mContentScrim != null) {
+                invalidateScrim();
+            } else if ((invalidate || scrimChanged) && !mDirtyRect.isEmpty()) {
+                ViewCompat.postInvalidateOnAnimation(FlexibleToolbarLayout.this,
+                        mDirtyRect.left, mDirtyRect.top, mDirtyRect.right, mDirtyRect.bottom);
+            }
         }
     }
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2016 Thomas Robert Altstidl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tr4android.support.extension.picker.date;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MonthGridTest {
+    // 1000-01-01 to 2999-12-31, which covers the date picker's range with plenty of margin
+    private static final long FIRST_EPOCH_DAY = -354285;
+    private static final long LAST_EPOCH_DAY = 376199;
+
+    @Test
+    public void epochDayRoundTrips() {
+        int year = 1000;
+        int month = Calendar.JANUARY;
+        int day = 1;
+        for (long epochDay = FIRST_EPOCH_DAY; epochDay <= LAST_EPOCH_DAY; epochDay++) {
+            assertEquals(epochDay, MonthGrid.toEpochDay(year, month, day));
+            assertEquals(MonthGrid.getMonthIndex(year, month), MonthGrid.getMonthIndex(epochDay));
+            assertEquals(day, MonthGrid.getDayOfMonth(epochDay));
+
+            // Advance to the next day
+            if (++day > MonthGrid.getDaysInMonth(month, year)) {
+                day = 1;
+                if (++month > Calendar.DECEMBER) {
+                    month = Calendar.JANUARY;
+                    year++;
+                }
+            }
+        }
+        assertEquals(3000, year);
+    }
+
+    @Test
+    public void epochDaysMatchKnownDates() {
+        assertEquals(0, MonthGrid.toEpochDay(1970, Calendar.JANUARY, 1));
+        assertEquals(-1, MonthGrid.toEpochDay(1969, Calendar.DECEMBER, 31));
+        assertEquals(-25567, MonthGrid.toEpochDay(1900, Calendar.JANUARY, 1));
+        assertEquals(10957, MonthGrid.toEpochDay(2000, Calendar.JANUARY, 1));
+        assertEquals(47482, MonthGrid.toEpochDay(2100, Calendar.JANUARY, 1));
+        assertEquals(-719528, MonthGrid.toEpochDay(0, Calendar.JANUARY, 1));
+    }
+
+    @Test
+    public void negativeEpochDays() {
+        assertEquals(MonthGrid.getMonthIndex(1969, Calendar.DECEMBER), MonthGrid.getMonthIndex(-1));
+        assertEquals(31, MonthGrid.getDayOfMonth(-1));
+        assertEquals(MonthGrid.getMonthIndex(1900, Calendar.JANUARY),
+                MonthGrid.getMonthIndex(-25567));
+        assertEquals(1, MonthGrid.getDayOfMonth(-25567));
+        assertEquals(MonthGrid.getMonthIndex(0, Calendar.JANUARY),
+                MonthGrid.getMonthIndex(-719528));
+        assertEquals(MonthGrid.getMonthIndex(-1, Calendar.DECEMBER),
+                MonthGrid.getMonthIndex(-719529));
+        assertEquals(31, MonthGrid.getDayOfMonth(-719529));
+    }
+
+    @Test
+    public void monthIndexSplitsIntoYearAndMonth() {
+        for (int year = -2; year <= 2; year++) {
+            for (int month = Calendar.JANUARY; month <= Calendar.DECEMBER; month++) {
+                final int monthIndex = MonthGrid.getMonthIndex(year, month);
+                assertEquals(year, MonthGrid.getYearForMonthIndex(monthIndex));
+                assertEquals(month, MonthGrid.getMonthForMonthIndex(monthIndex));
+            }
+        }
+    }
+
+    @Test
+    public void centuryLeapYears() {
+        assertFalse(MonthGrid.isLeapYear(1900));
+        assertTrue(MonthGrid.isLeapYear(2000));
+        assertFalse(MonthGrid.isLeapYear(2100));
+        assertTrue(MonthGrid.isLeapYear(2016));
+        assertFalse(MonthGrid.isLeapYear(2015));
+
+        assertEquals(28, MonthGrid.getDaysInMonth(Calendar.FEBRUARY, 1900));
+        assertEquals(29, MonthGrid.getDaysInMonth(Calendar.FEBRUARY, 2000));
+        assertEquals(28, MonthGrid.getDaysInMonth(Calendar.FEBRUARY, 2100));
+
+        assertEquals(MonthGrid.toEpochDay(1900, Calendar.FEBRUARY, 28) + 1,
+                MonthGrid.toEpochDay(1900, Calendar.MARCH, 1));
+        assertEquals(MonthGrid.toEpochDay(2000, Calendar.FEBRUARY, 29) + 1,
+                MonthGrid.toEpochDay(2000, Calendar.MARCH, 1));
+        assertEquals(MonthGrid.toEpochDay(2100, Calendar.FEBRUARY, 28) + 1,
+                MonthGrid.toEpochDay(2100, Calendar.MARCH, 1));
+        assertEquals(366, MonthGrid.toEpochDay(2001, Calendar.JANUARY, 1)
+                - MonthGrid.toEpochDay(2000, Calendar.JANUARY, 1));
+        assertEquals(365, MonthGrid.toEpochDay(2101, Calendar.JANUARY, 1)
+                - MonthGrid.toEpochDay(2100, Calendar.JANUARY, 1));
+    }
+
+    @Test
+    public void dayOfWeek() {
+        assertEquals(Calendar.THURSDAY, MonthGrid.getDayOfWeek(0));
+        assertEquals(Calendar.WEDNESDAY, MonthGrid.getDayOfWeek(-1));
+        assertEquals(Calendar.SATURDAY, MonthGrid.getDayOfWeek(
+                MonthGrid.toEpochDay(2000, Calendar.JANUARY, 1)));
+        assertEquals(Calendar.MONDAY, MonthGrid.getDayOfWeek(
+                MonthGrid.toEpochDay(1900, Calendar.JANUARY, 1)));
+        assertEquals(Calendar.FRIDAY, MonthGrid.getDayOfWeek(
+                MonthGrid.toEpochDay(2100, Calendar.JANUARY, 1)));
+    }
+
+    @Test
+    public void dayOffsetForEveryWeekStart() {
+        for (int weekStart = Calendar.SUNDAY; weekStart <= Calendar.SATURDAY; weekStart++) {
+            for (int dayOfWeek = Calendar.SUNDAY; dayOfWeek <= Calendar.SATURDAY; dayOfWeek++) {
+                final int expected = (dayOfWeek - weekStart + MonthGrid.DAYS_IN_WEEK)
+                        % MonthGrid.DAYS_IN_WEEK;
+                assertEquals(expected, MonthGrid.getDayOffset(dayOfWeek, weekStart));
+            }
+        }
+
+        // March 2016 starts on a Tuesday
+        final int[] offsets = {2, 1, 0, 6, 5, 4, 3};
+        for (int weekStart = Calendar.SUNDAY; weekStart <= Calendar.SATURDAY; weekStart++) {
+            final MonthGrid grid = new MonthGrid(2016, Calendar.MARCH, weekStart, 1, 31);
+            assertEquals(Calendar.TUESDAY, grid.getDayOfWeekStart());
+            assertEquals(offsets[weekStart - Calendar.SUNDAY], grid.getDayOffset());
+        }
+    }
+
+    @Test
+    public void enabledRangeIsConstrainedToTheMonth() {
+        final MonthGrid grid = new MonthGrid(2015, Calendar.FEBRUARY, Calendar.SUNDAY, -5, 40);
+        assertEquals(28, grid.getDaysInMonth());
+        assertEquals(1, grid.getEnabledDayStart());
+        assertEquals(28, grid.getEnabledDayEnd());
+        assertTrue(grid.isDayEnabled(28));
+        assertFalse(grid.isValidDayOfMonth(29));
+
+        final MonthGrid partial = new MonthGrid(2016, Calendar.FEBRUARY, Calendar.SUNDAY, 10, 5);
+        assertEquals(10, partial.getEnabledDayStart());
+        assertEquals(10, partial.getEnabledDayEnd());
+        assertFalse(partial.isDayEnabled(9));
+    }
+
+    @Test
+    public void timestampsUseTheTimeZone() {
+        final TimeZone utc = TimeZone.getTimeZone("UTC");
+        final TimeZone tokyo = TimeZone.getTimeZone("Asia/Tokyo");
+        final TimeZone newYork = TimeZone.getTimeZone("America/New_York");
+
+        // 2016-03-01T00:30:00Z
+        final long millis = 1456792200000L;
+        final long day = MonthGrid.toEpochDay(2016, Calendar.MARCH, 1);
+        assertEquals(day, MonthGrid.toEpochDay(millis, utc));
+        assertEquals(day, MonthGrid.toEpochDay(millis, tokyo));
+        assertEquals(day - 1, MonthGrid.toEpochDay(millis, newYork));
+
+        // Before the epoch
+        assertEquals(-1, MonthGrid.toEpochDay(-1L, utc));
+        assertEquals(-1, MonthGrid.toEpochDay(0L, newYork));
+    }
+}